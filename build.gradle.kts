@@ -1,6 +1,7 @@
 plugins {
   id("java")
   id("org.jetbrains.intellij") version "1.17.2"
+  id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.gk646"
@@ -19,6 +20,24 @@ intellij {
   plugins.set(listOf(/* Plugin Dependencies */))
 }
 
+// Benchmarks in src/jmh/java, run with ./gradlew jmh
+// Results are written as JSON to build/results/jmh/results.json, pass -PjmhIncludes=<regex> to run only some
+jmh {
+  jmhVersion.set("1.37")
+  resultFormat.set("JSON")
+  resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+  if (project.hasProperty("jmhIncludes")) {
+    includes.set(listOf(project.property("jmhIncludes").toString()))
+  }
+}
+
+// The parser classes reference the IDE, so the benchmarks need it on their classpath like the tests
+configurations {
+  named("jmhCompileOnly") { extendsFrom(configurations.compileOnly.get()) }
+  named("jmhImplementation") { extendsFrom(configurations.testImplementation.get()) }
+  named("jmhRuntimeOnly") { extendsFrom(configurations.testRuntimeOnly.get()) }
+}
+
 tasks {
   // Set the JVM compatibility versions
   withType<JavaCompile> {
@@ -43,4 +62,13 @@ tasks {
   publishPlugin {
     token.set(System.getenv("PUBLISH_TOKEN"))
   }
+
+  // Headless scanner for CI, needs no IDE classes at runtime: java -jar build/libs/CodeStats-<version>-cli.jar <root> [options]
+  register<Jar>("cliJar") {
+    archiveClassifier.set("cli")
+    from(sourceSets.main.get().output)
+    manifest {
+      attributes["Main-Class"] = "com.gk646.codestats.cli.CodeStatsCli"
+    }
+  }
 }
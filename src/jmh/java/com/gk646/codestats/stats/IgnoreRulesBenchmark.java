@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A {@link ScanEngine#scan()} over a generated repository that is mostly ignored build output and dependencies,
+ * once counting everything and once pruning with the {@link IgnoreRules} of its .gitignore files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IgnoreRulesBenchmark {
+    private static final int SOURCE_FILES = 500;
+    private static final int IGNORED_FILES = 20_000;
+
+    @Param({"false", "true"})
+    public boolean useIgnoreFiles;
+
+    private Path root;
+    private ScanEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("codestats-jmh-ignore");
+        var random = new Random(42);
+        Files.writeString(root.resolve(".gitignore"), "/build/\nnode_modules/\n*.o\n*.log\n!keep.log\n");
+        Files.createDirectories(root.resolve("web"));
+        Files.writeString(root.resolve("web/.gitignore"), "dist/\n");
+        for (int i = 0; i < SOURCE_FILES; i++) {
+            writeFile(root.resolve("src/module" + i % 20 + "/File" + i + ".java"), random);
+            if (i % 10 == 0) writeFile(root.resolve("src/module" + i % 20 + "/File" + i + ".o"), random);
+        }
+        writeFile(root.resolve("keep.log"), random);
+        for (int i = 0; i < IGNORED_FILES; i++) {
+            String dir = switch (i % 4) {
+                case 0 -> "build/classes/p" + i % 50;
+                case 1 -> "node_modules/pkg" + i % 200 + "/lib";
+                case 2 -> "web/dist/chunk" + i % 20;
+                default -> "logs/run" + i % 10;
+            };
+            writeFile(root.resolve(dir + "/artifact" + i + (i % 4 == 3 ? ".log" : ".js")), random);
+        }
+        var settings = new ScanSettings();
+        settings.separateTabs = new HashSet<>(List.of("java"));
+        settings.useIgnoreFiles = useIgnoreFiles;
+        engine = new ScanEngine(root, settings);
+    }
+
+    private static void writeFile(Path path, Random random) throws IOException {
+        Files.createDirectories(path.getParent());
+        var sb = new StringBuilder();
+        int lines = 10 + random.nextInt(200);
+        for (int i = 0; i < lines; i++) {
+            sb.append("line ").append(random.nextInt()).append('\n');
+        }
+        Files.writeString(path, sb);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * @return the scan result, so the work isn't eliminated
+     */
+    @Benchmark
+    public ScanResult scan() {
+        return engine.scan();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.util.Random;
+
+/**
+ * Generates source code that looks like real Java, Python or C++ for the benchmarks: imports, doc comments, block and line comments,
+ * blank lines and code with comment markers inside strings, mixed in by a seeded {@link Random}.
+ */
+final class SourceSamples {
+
+    private SourceSamples() {
+        //Utility class
+    }
+
+    /**
+     * @param language "java", "py" or "cpp"
+     * @return at least the given number of chars, ending with a complete line
+     */
+    static String generate(String language, int chars, Random random) {
+        var sb = new StringBuilder(chars + 256);
+        switch (language) {
+            case "java" -> sb.append("package com.example.module;\n\n");
+            case "py" -> sb.append("#!/usr/bin/env python3\n\n");
+            case "cpp" -> sb.append("#pragma once\n\n");
+            default -> throw new IllegalArgumentException(language);
+        }
+        while (sb.length() < chars) {
+            switch (language) {
+                case "java" -> appendJava(sb, random);
+                case "py" -> appendPython(sb, random);
+                default -> appendCpp(sb, random);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendJava(StringBuilder sb, Random random) {
+        int kind = random.nextInt(10);
+        switch (kind) {
+            case 0 -> sb.append("import java.util.").append(word(random)).append(";\n");
+            case 1 -> {
+                sb.append("    /**\n");
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    sb.append("     * ").append(sentence(random)).append('\n');
+                }
+                sb.append("     * @param ").append(word(random)).append(' ').append(sentence(random)).append("\n     */\n");
+            }
+            case 2 -> sb.append("        // ").append(sentence(random)).append('\n');
+            case 3 -> sb.append("        /* ").append(sentence(random)).append(" */\n");
+            case 4 -> sb.append('\n');
+            case 5 -> sb.append("        String url = \"http://").append(word(random)).append(".com/*\"; // ").append(word(random)).append('\n');
+            default -> appendCode(sb, random, "        ", ";");
+        }
+    }
+
+    private static void appendPython(StringBuilder sb, Random random) {
+        int kind = random.nextInt(10);
+        switch (kind) {
+            case 0 -> sb.append("from ").append(word(random)).append(" import ").append(word(random)).append('\n');
+            case 1 -> {
+                sb.append("    \"\"\"").append(sentence(random)).append('\n');
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    sb.append("    ").append(sentence(random)).append('\n');
+                }
+                sb.append("    \"\"\"\n");
+            }
+            case 2 -> sb.append("    # ").append(sentence(random)).append('\n');
+            case 3 -> sb.append("    '''").append(sentence(random)).append("'''\n");
+            case 4 -> sb.append('\n');
+            case 5 -> sb.append("    pattern = \"#").append(word(random)).append("\"  # ").append(word(random)).append('\n');
+            default -> appendCode(sb, random, "    ", "");
+        }
+    }
+
+    private static void appendCpp(StringBuilder sb, Random random) {
+        int kind = random.nextInt(10);
+        switch (kind) {
+            case 0 -> sb.append("#include <").append(word(random)).append(">\n");
+            case 1 -> {
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    sb.append("/// ").append(sentence(random)).append('\n');
+                }
+            }
+            case 2 -> sb.append("    // ").append(sentence(random)).append('\n');
+            case 3 -> {
+                sb.append("    /*\n");
+                for (int i = random.nextInt(3); i >= 0; i--) {
+                    sb.append("     ").append(sentence(random)).append('\n');
+                }
+                sb.append("     */\n");
+            }
+            case 4 -> sb.append('\n');
+            case 5 -> sb.append("    auto path = \"/*").append(word(random)).append("\"; // ").append(word(random)).append('\n');
+            default -> appendCode(sb, random, "    ", ";");
+        }
+    }
+
+    private static void appendCode(StringBuilder sb, Random random, String indent, String end) {
+        sb.append(indent).append(word(random)).append(" = ").append(word(random)).append('(');
+        for (int i = random.nextInt(4); i > 0; i--) {
+            sb.append(word(random)).append(i > 1 ? ", " : "");
+        }
+        sb.append(')').append(end).append('\n');
+    }
+
+    private static String sentence(Random random) {
+        var sb = new StringBuilder();
+        for (int i = 3 + random.nextInt(8); i > 0; i--) {
+            sb.append(word(random)).append(i > 1 ? " " : ".");
+        }
+        return sb.toString();
+    }
+
+    private static final String[] WORDS = {"value", "count", "result", "buffer", "index", "parser", "entry", "node", "list", "map",
+            "update", "compute", "size", "total", "line", "file", "path", "name", "state", "config"};
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
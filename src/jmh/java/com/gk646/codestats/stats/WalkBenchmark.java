@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A full {@link ScanEngine#scan()} over a generated tree: directories of java, py and cpp files
+ * as separate tabs, plus text files that are only line counted. The tree is created once per trial with a fixed seed.
+ * Each scan starts with an empty {@link ContentCache}, so no invocation reuses the stats parsed by an earlier one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalkBenchmark {
+    private static final String[] LANGUAGES = {"java", "py", "cpp"};
+    private static final int FILES_PER_DIRECTORY = 20;
+
+    @Param({"2000"})
+    public int files;
+
+    private Path root;
+    private ScanEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("codestats-jmh");
+        var random = new Random(42);
+        var dir = root;
+        for (int i = 0; i < files; i++) {
+            if (i % FILES_PER_DIRECTORY == 0) {
+                // Every few directories go back up, so the tree has both depth and breadth
+                dir = random.nextInt(4) == 0 ? root : dir;
+                dir = Files.createDirectories(dir.resolve("dir" + i));
+            }
+            String language = LANGUAGES[random.nextInt(LANGUAGES.length)];
+            // Mostly small files and a few large ones, like in real projects
+            int chars = random.nextInt(20) == 0 ? 200_000 + random.nextInt(200_000) : 500 + random.nextInt(12_000);
+            String source = SourceSamples.generate(language, chars, random);
+            Files.writeString(dir.resolve("File" + i + "." + (random.nextInt(5) == 0 ? "txt" : language)), source);
+        }
+        var settings = new ScanSettings();
+        settings.separateTabs = new HashSet<>(List.of(LANGUAGES));
+        engine = new ScanEngine(root, settings);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * @return the walk result, so the work isn't eliminated
+     */
+    @Benchmark
+    public ScanResult walk() {
+        return engine.scan();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per file of the sequential and the positional reads of {@link LineCounter} and of the public entry point,
+ * against the two byte by byte counters it replaced, across file sizes. The file stays in the page cache, so this measures the counting and not the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineCounterBenchmark {
+    @Param({"4096", "262144", "8388608", "134217728"})
+    public int size;
+
+    private Path file;
+    private FileChannel channel;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("codestats-jmh", ".txt");
+        var random = new Random(42);
+        var bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = random.nextInt(40) == 0 ? (byte) '\n' : (byte) ('a' + random.nextInt(26));
+        }
+        Files.write(file, bytes);
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        int expected = countReadAllBytes(file);
+        if (countBufferedStream(file) != expected || LineCounter.countLines(file) != expected) {
+            throw new IllegalStateException("Line counts differ for " + size + " bytes");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        channel.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public long buffered() throws IOException {
+        channel.position(0);
+        return LineCounter.countBuffered(channel);
+    }
+
+    /**
+     * Like a range of a large file split by the walker
+     */
+    @Benchmark
+    public long positional() throws IOException {
+        return LineCounter.countLines(channel, 0, size);
+    }
+
+    /**
+     * Includes opening the file, like the parser does per file
+     */
+    @Benchmark
+    public int countLines() throws IOException {
+        return LineCounter.countLines(file);
+    }
+
+    /**
+     * Baseline: the former counter for files up to 50mb
+     */
+    @Benchmark
+    public int readAllBytesBaseline() throws IOException {
+        return countReadAllBytes(file);
+    }
+
+    /**
+     * Baseline: the former counter for larger files
+     */
+    @Benchmark
+    public int bufferedStreamBaseline() throws IOException {
+        return countBufferedStream(file);
+    }
+
+    // The former ParsingUtil.parseSmallNonUTFFile
+    static int countReadAllBytes(Path path) throws IOException {
+        int lines = 0;
+        for (var b : Files.readAllBytes(path)) {
+            if (b == 10) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    // The former ParsingUtil.parseLargeNonUTFFile
+    static int countBufferedStream(Path path) throws IOException {
+        int lines = 0;
+        try (var bis = new BufferedInputStream(Files.newInputStream(path))) {
+            byte[] buffer = new byte[262144];
+            int bytesRead;
+            while ((bytesRead = bis.read(buffer)) != -1) {
+                for (int i = 0; i < bytesRead; i++) {
+                    if (buffer[i] == 10) {
+                        lines++;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+}
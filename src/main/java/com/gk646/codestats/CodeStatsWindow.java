@@ -62,18 +62,22 @@ public final class CodeStatsWindow implements ToolWindowFactory, ToolWindowManag
 
     /**
      * Central update method to completely update CodeStats's toolwindow with the current project files.
-     * Clears old information, triggers a full parse over the source files and then builds the new tables.
+     * Parses the source files and then replaces the old tables, which stay shown if the update is cancelled.
+     * For the project root only the files changed since the last update are parsed again if possible.
      *
      * @param isSilentUpdate true if the update should not create a notification
      */
     public static void update(boolean isSilentUpdate, Path basePath) {
+        update(isSilentUpdate, basePath, false);
+    }
+
+    /**
+     * @param isEstimate only read a sample of the files and extrapolate the line totals
+     */
+    public static void update(boolean isSilentUpdate, Path basePath, boolean isEstimate) {
         if (PARSER.isUpdating.get()) return;
         PARSER.isUpdating.set(true);
-        int tabCount = TABBED_PANE.getTabCount();
-        for (int i = tabCount - 1; i > 0; i--) {
-            TABBED_PANE.remove(i);
-        }
-        PARSER.updatePane(isSilentUpdate, basePath);
+        PARSER.updatePane(isSilentUpdate, basePath, isEstimate);
     }
 
     public static void update(boolean isSilentUpdate) {
@@ -112,29 +116,37 @@ public final class CodeStatsWindow implements ToolWindowFactory, ToolWindowManag
         ActionButton refreshButton = UIHelper.createButton("Refresh", "Get CodeStats!", AllIcons.Actions.Refresh, () -> CodeStatsWindow.update(false));
         ActionButton settingsButton = UIHelper.createButton("Settings", "Customize CodeStats!", AllIcons.General.GearPlain, () -> ShowSettingsUtil.getInstance().showSettingsDialog(project, SettingsPanel.class));
         ActionButton directoryChooser = UIHelper.createButton("Scan custom directory", "Choose and scan a custom directory", AllIcons.Actions.Preview, () -> {
-            FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createSingleFolderDescriptor();
-            descriptor.setTitle("Select Directory");
-
-            // Open the dialog and get the result
-            var file = FileChooser.chooseFile(descriptor, project, null);
-            if (file != null) {
-                var path = file.getFileSystem().getNioPath(file);
-                if (path != null) update(false, path);
-            } else {
-                Messages.showInfoMessage(project, "No directory was selected.", "No Selection");
-            }
+            var path = chooseDirectory(project);
+            if (path != null) update(false, path);
         });
-
+        ActionButton directoryEstimate = UIHelper.createButton("Estimate custom directory", "Choose a directory and estimate its line counts from a sample of its files", AllIcons.Actions.Profile, () -> {
+            var path = chooseDirectory(project);
+            if (path != null) update(false, path, true);
+        });
+        ActionButton backfillButton = UIHelper.createButton("Backfill commit timeline", "Add the past commits of the local git history to the commit timeline", AllIcons.Vcs.History, () -> PARSER.backfillTimeline());
 
         JPanel mainPanel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
 
-        UIHelper.createMainUI(gbc, List.of(refreshButton, settingsButton, directoryChooser), mainPanel);
+        UIHelper.createMainUI(gbc, List.of(refreshButton, settingsButton, directoryChooser, directoryEstimate, backfillButton), mainPanel);
 
         var content = ContentFactory.getInstance().createContent(mainPanel, "CodeStats", true);
         toolWindow.getContentManager().addContent(content);
     }
 
+    private static Path chooseDirectory(Project project) {
+        FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createSingleFolderDescriptor();
+        descriptor.setTitle("Select Directory");
+
+        // Open the dialog and get the result
+        var file = FileChooser.chooseFile(descriptor, project, null);
+        if (file == null) {
+            Messages.showInfoMessage(project, "No directory was selected.", "No Selection");
+            return null;
+        }
+        return file.getFileSystem().getNioPath(file);
+    }
+
     @Override
     public void toolWindowShown(@NotNull ToolWindow toolWindow) {
         if ("CodeStats".equals(toolWindow.getId()) && !PersistentSave.getInstance().disableAutoUpdate) {
@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.cli;
+
+import com.gk646.codestats.stats.HistoryScan;
+import com.gk646.codestats.stats.ScanEngine;
+import com.gk646.codestats.stats.ScanReport;
+import com.gk646.codestats.stats.ScanSettings;
+import com.gk646.codestats.util.ParsingUtil;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Scans a directory without the IDE, e.g. on a build server, and prints the stats as JSON or CSV. <br>
+ * Uses the same {@link ScanEngine} as the tool window with the default settings of the plugin, changed by the options below.
+ * Only JDK classes are needed at runtime: {@code java -jar codestats-cli.jar <root> [options]}
+ */
+public final class CodeStatsCli {
+    private static final String USAGE = """
+            Usage: codestats <root> [options]
+              --format json|csv        output format, default json
+              --output <file>          write to a file instead of stdout
+              --no-files               only the overview per extension, without a row per file
+              --exclude-dir <dir>      skip a directory, relative to the root or absolute (repeatable)
+              --exclude-regex <regex>  skip paths matching the regex, relative to the root (repeatable)
+              --exclude-types <a;b>    excluded extensions, replaces the default list
+              --include-types <a;b>    only count these extensions
+              --tabs <a;b>             extensions with comment and code lines, replaces the default list
+              --no-presets             don't skip IDE, build, dependency, VCS, cache and venv directories
+              --ignore-files           skip what .gitignore and .ignore files exclude
+              --charset <name>         charset of the source files, default UTF-8
+              --count-misc             count imports and includes as code lines
+              --metrics                print the timings of the scan as JSON to stderr
+              --history <n>            count the newest n commits of the git history instead of the files
+            """;
+
+    private CodeStatsCli() {
+        //Utility class
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Failed to write the output: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the exit code
+     * @throws IllegalArgumentException for invalid options
+     */
+    static int run(String[] args) throws IOException {
+        if (args.length == 0 || args[0].equals("--help") || args[0].equals("-h")) {
+            System.out.print(USAGE);
+            return args.length == 0 ? 2 : 0;
+        }
+        var root = Path.of(args[0]).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("Not a directory: " + root);
+        }
+
+        var settings = new ScanSettings();
+        boolean isCsv = false;
+        boolean withFiles = true;
+        boolean usePresets = true;
+        boolean printMetrics = false;
+        int historyCommits = 0;
+        Path output = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--format" -> {
+                    String format = value(args, ++i);
+                    if (!format.equals("json") && !format.equals("csv")) throw new IllegalArgumentException("Unknown format: " + format);
+                    isCsv = format.equals("csv");
+                }
+                case "--output" -> output = Path.of(value(args, ++i));
+                case "--no-files" -> withFiles = false;
+                case "--exclude-dir" -> settings.excludedDirectories.add(root.resolve(value(args, ++i)).normalize().toString());
+                case "--exclude-regex" -> {
+                    String regex = value(args, ++i);
+                    try {
+                        settings.excludedRegexes.add(Pattern.compile(regex));
+                    } catch (PatternSyntaxException e) {
+                        throw new IllegalArgumentException("Invalid regex: " + regex);
+                    }
+                }
+                case "--exclude-types" -> settings.excludedTypes = ScanSettings.split(value(args, ++i));
+                case "--include-types" -> settings.includedTypes = ScanSettings.split(value(args, ++i));
+                case "--tabs" -> settings.separateTabs = ScanSettings.split(value(args, ++i));
+                case "--no-presets" -> usePresets = false;
+                case "--ignore-files" -> settings.useIgnoreFiles = true;
+                case "--charset" -> settings.charset = ParsingUtil.getCharsetFallback(value(args, ++i), StandardCharsets.UTF_8);
+                case "--count-misc" -> settings.countMiscLines = true;
+                case "--metrics" -> printMetrics = true;
+                case "--history" -> {
+                    String count = value(args, ++i);
+                    try {
+                        historyCommits = Integer.parseInt(count);
+                    } catch (NumberFormatException e) {
+                        historyCommits = 0;
+                    }
+                    if (historyCommits <= 0) throw new IllegalArgumentException("Invalid commit count: " + count);
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (usePresets) {
+            settings.excludeDirectories(root, ScanSettings.IDE_DIRECTORIES);
+            settings.excludeDirectories(root, ScanSettings.NPM_DIRECTORIES);
+            settings.excludeDirectories(root, ScanSettings.COMPILER_DIRECTORIES);
+            settings.excludeDirectories(root, ScanSettings.VCS_DIRECTORIES);
+            settings.excludeDirectories(root, ScanSettings.CACHE_DIRECTORIES);
+            settings.excludeDirectories(root, ScanSettings.PYTHON_DIRECTORIES);
+        }
+
+        var engine = new ScanEngine(root, settings);
+        if (historyCommits > 0) {
+            return writeHistory(engine, root, historyCommits, isCsv, output);
+        }
+        var result = engine.scan();
+
+        try (Writer out = openOutput(output)) {
+            if (isCsv) {
+                ScanReport.writeCsv(result, root, withFiles, out);
+            } else {
+                ScanReport.writeJson(result, root, withFiles, out);
+            }
+        }
+        if (printMetrics) {
+            System.err.println(engine.getMetrics().toJson());
+        }
+        return 0;
+    }
+
+    private static int writeHistory(ScanEngine engine, Path root, int maxCommits, boolean isCsv, Path output) throws IOException {
+        List<HistoryScan.CommitStats> commits;
+        try {
+            commits = new HistoryScan(engine, null).scan(maxCommits, null);
+        } catch (IOException e) {
+            System.err.println("Failed to read the git history: " + e.getMessage());
+            return 1;
+        }
+        if (commits == null) {
+            System.err.println("Not inside a git repository: " + root);
+            return 1;
+        }
+        try (Writer out = openOutput(output)) {
+            if (isCsv) {
+                ScanReport.writeHistoryCsv(commits, out);
+            } else {
+                ScanReport.writeHistoryJson(commits, root, out);
+            }
+        }
+        return 0;
+    }
+
+    private static Writer openOutput(Path output) throws IOException {
+        return new BufferedWriter(output == null ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8) : Files.newBufferedWriter(output), 1 << 16);
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        return args[index];
+    }
+}
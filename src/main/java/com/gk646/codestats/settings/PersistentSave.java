@@ -25,8 +25,10 @@
 package com.gk646.codestats.settings;
 
 import com.gk646.codestats.CodeStatsWindow;
+import com.gk646.codestats.stats.ScanSettings;
 import com.gk646.codestats.ui.LineChartPanel;
 import com.gk646.codestats.util.TimePoint;
+import com.gk646.codestats.util.TimelineRollup;
 import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.components.State;
@@ -39,6 +41,7 @@ import org.jetbrains.annotations.NotNull;
 import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
 
@@ -51,12 +54,15 @@ import java.util.List;
         storages = {@Storage(StoragePathMacros.WORKSPACE_FILE)}
 )
 public final class PersistentSave implements PersistentStateComponent<PersistentSave> {
-    private static final int MAX_SAVED_TIMEPOINTS = 200;
+    /**
+     * A commit of the history this close to a saved point is taken as the same commit
+     */
+    private static final long SAME_COMMIT_MS = 60_000;
     public List<TimePoint> commitTimePoints = new ArrayList<>(15);
     public List<TimePoint> genericTimePoints = new ArrayList<>(15);
-    public String excludedFileTypes = "exe;wav;ttf;sql;tmp;dmp;ico;dat;svg;class;svn-base;svn-work;gif;png;jpg;mp3;jpeg;bmp;tga;tiff;ear;war;zip;jar;iml;iws;ipr;bz2;gz;pyc;rar;bak;swp;tmp;log;pdb;obj;ipch;dll";
+    public String excludedFileTypes = ScanSettings.DEFAULT_EXCLUDED_TYPES;
     public String includedFileTypes = "";
-    public String separateTabsTypes = "java;cpp;c;hpp;h;rs;css;html;js;php;py;cs;go;rb;swift;ts;kt;sql;pl;lua;groovy;asp;aspx;jsp;json;scss;less;sass;sh;bat;ps1;md;f;r;m;asm;ada;scala;dart;jsx;julia";
+    public String separateTabsTypes = ScanSettings.DEFAULT_SEPARATE_TABS;
     public String charSet = StandardCharsets.UTF_8.toString();
     public boolean isExcludeIDE = true;
     public boolean isExcludeCache = true;
@@ -67,6 +73,7 @@ public final class PersistentSave implements PersistentStateComponent<Persistent
     public boolean disableAutoUpdate = false;
     public boolean disableTimeLine = false;
     public boolean countMiscLines = false;
+    public boolean useIgnoreFiles = false;
     @XCollection(propertyElementName = "excludedDirs", elementTypes = String.class)
     public List<String> excludedDirectories = new ArrayList<>();
 
@@ -86,13 +93,32 @@ public final class PersistentSave implements PersistentStateComponent<Persistent
             list = getInstance().commitTimePoints;
         }
         list.add(point);
-        enforceSizeLimit(list);
+        TimelineRollup.compact(list, point.timestamp);
     }
 
-    private static void enforceSizeLimit(@NotNull List<TimePoint> points) {
-        if (points.size() == MAX_SAVED_TIMEPOINTS) {
-            points.remove(0);
+    /**
+     * Adds commit points read from the history, see {@link com.gk646.codestats.stats.HistoryScan}. <br>
+     * Commits that already have a point, recorded on commit or by an earlier backfill and possibly combined since, are skipped.
+     */
+    public static void addCommitHistory(List<TimePoint> points) {
+        var list = getInstance().commitTimePoints;
+        long[] saved = new long[list.size()];
+        for (int i = 0; i < saved.length; i++) {
+            saved[i] = list.get(i).timestamp;
         }
+        Arrays.sort(saved);
+        var rollups = new ArrayList<TimePoint>();
+        for (var point : list) {
+            if (point.isRollup()) rollups.add(point);
+        }
+        for (var point : points) {
+            int index = Arrays.binarySearch(saved, point.timestamp - SAME_COMMIT_MS);
+            if (index < 0) index = -index - 1;
+            if ((index == saved.length || saved[index] > point.timestamp + SAME_COMMIT_MS) && !TimelineRollup.isCovered(rollups, point.timestamp)) {
+                list.add(point);
+            }
+        }
+        TimelineRollup.compact(list, System.currentTimeMillis());
     }
 
     private static void enforceGenericLimits(@NotNull List<TimePoint> points) {
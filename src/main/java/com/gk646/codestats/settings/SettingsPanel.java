@@ -71,6 +71,7 @@ public final class SettingsPanel implements Configurable {
     private static final JBCheckBox exclude_cache = new JBCheckBox("Exclude cache and temporary (.cache|tmp|temp)");
     private static final JBCheckBox exclude_python = new JBCheckBox("Exclude python and environment (venv|env|.env)");
     private static final JBCheckBox excludeVCS = new JBCheckBox("Exclude VCS directories (.git|.svn|.hg)");
+    private static final JBCheckBox useIgnoreFiles = new JBCheckBox("Exclude paths ignored by .gitignore and .ignore files");
     private static final JBCheckBox disableAutomaticUpdate = new JBCheckBox("Disable automatic update when opening CodeStats");
     private static final JBCheckBox countMiscLines = new JBCheckBox("Count misc lines as source code (#include|import|package)");
     private static final ComboBox<String> charsetMenu = UIHelper.getCharsetMenu();
@@ -131,6 +132,7 @@ public final class SettingsPanel implements Configurable {
                 || exclude_cache.isSelected() != settings.isExcludeCache
                 || exclude_compiler.isSelected() != settings.excludeCompiler
                 || excludeVCS.isSelected() != settings.excludeGit
+                || useIgnoreFiles.isSelected() != settings.useIgnoreFiles
                 || countMiscLines.isSelected() != settings.countMiscLines
                 || disableAutomaticUpdate.isSelected() != settings.disableAutoUpdate
                 || disableTimeLine.isSelected() != settings.disableTimeLine
@@ -149,6 +151,7 @@ public final class SettingsPanel implements Configurable {
         exclude_npm.setSelected(settings.isExcludeNPM);
         exclude_compiler.setSelected(settings.excludeCompiler);
         excludeVCS.setSelected(settings.excludeGit);
+        useIgnoreFiles.setSelected(settings.useIgnoreFiles);
         disableAutomaticUpdate.setSelected(settings.disableAutoUpdate);
         disableTimeLine.setSelected(settings.disableTimeLine);
         exclude_cache.setSelected(settings.isExcludeCache);
@@ -184,6 +187,7 @@ public final class SettingsPanel implements Configurable {
         settings.isExcludeCache = exclude_cache.isSelected();
         settings.excludeCompiler = exclude_compiler.isSelected();
         settings.excludeGit = excludeVCS.isSelected();
+        settings.useIgnoreFiles = useIgnoreFiles.isSelected();
         settings.disableAutoUpdate = disableAutomaticUpdate.isSelected();
         settings.charSet = charsetMenu.getItemAt(charsetMenu.getSelectedIndex());
         settings.disableTimeLine = disableTimeLine.isSelected();
@@ -334,6 +338,9 @@ public final class SettingsPanel implements Configurable {
         constraints.gridy++;
         panel.add(excludeVCS, constraints);
 
+        constraints.gridy++;
+        panel.add(useIgnoreFiles, constraints);
+
         constraints.gridy++;
         panel.add(exclude_cache, constraints);
 
@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detects binary files by their first {@link #SNIFF_SIZE} bytes, so they don't have to be read completely just to count newlines. <br>
+ * Like git, a file is binary if it contains a NUL byte, or if too many bytes are control characters.
+ * Once enough files of an extension in a row had the same result, the extension is settled and its files aren't opened anymore.
+ */
+final class BinarySniffer {
+    /**
+     * The OverView entry binary files are counted under, without lines
+     */
+    static final String BUCKET = "binary";
+    static final int SNIFF_SIZE = 8 << 10;
+    private static final int SETTLE_AFTER = 32;
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(SNIFF_SIZE));
+    private final ConcurrentHashMap<String, Verdict> verdicts = new ConcurrentHashMap<>();
+
+    private static final class Verdict {
+        private boolean isLastBinary;
+        private int streak;
+        private volatile boolean isSettled;
+
+        synchronized void record(boolean isBinary) {
+            if (isBinary != isLastBinary) {
+                isLastBinary = isBinary;
+                streak = 0;
+            }
+            if (++streak >= SETTLE_AFTER) {
+                isSettled = true;
+            }
+        }
+    }
+
+    /**
+     * @return true if the file should be counted as {@link #BUCKET}. Unreadable files count as text, their count fails later.
+     */
+    boolean isBinary(Path path, String extension) {
+        var verdict = verdicts.computeIfAbsent(extension, k -> new Verdict());
+        if (verdict.isSettled) {
+            return verdict.isLastBinary;
+        }
+
+        boolean isBinary;
+        try {
+            isBinary = sniff(path);
+        } catch (IOException e) {
+            return false;
+        }
+        verdict.record(isBinary);
+        return isBinary;
+    }
+
+    static boolean sniff(Path path) throws IOException {
+        var buffer = BUFFER.get();
+        buffer.clear();
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // Fill the buffer or read the whole file
+            }
+        }
+        return isBinary(buffer.array(), buffer.position());
+    }
+
+    static boolean isBinary(byte[] bytes, int length) {
+        // UTF-16 text is full of NUL bytes but counts fine
+        if (length >= 2 && (bytes[0] == (byte) 0xFE && bytes[1] == (byte) 0xFF || bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xFE)) {
+            return false;
+        }
+        int controlBytes = 0;
+        for (int i = 0; i < length; i++) {
+            int b = bytes[i] & 0xFF;
+            if (b == 0) return true;
+            // Backspace, tab, newlines, form feed and escape are common in text
+            if (b < 0x20 && (b < 0x08 || b > 0x0D) && b != 0x1B || b == 0x7F) {
+                controlBytes++;
+            }
+        }
+        return controlBytes * 10 > length * 3;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The comment syntax of a language: line comment prefixes, block comment delimiters, their documentation variants and
+ * the prefixes of misc lines (imports, includes...). <br>
+ * All markers are compiled into a table indexed by their first char, so a line only checks the few markers that can match it.
+ * Grammars are registered per file extension, unknown extensions use {@link #GENERIC}.
+ */
+public final class CommentGrammar {
+    static final int LINE_COMMENT = 0;
+    static final int LINE_DOC = 1;
+    static final int BLOCK_COMMENT = 2;
+    static final int BLOCK_DOC = 3;
+    static final int MISC = 4;
+
+    private static final String[] NONE = {};
+    private static final ConcurrentHashMap<String, CommentGrammar> GRAMMARS = new ConcurrentHashMap<>(64);
+
+    /**
+     * The markers of the original parser, applied to every extension without its own grammar
+     */
+    public static final CommentGrammar GENERIC = new CommentGrammar(
+            new String[]{"//", "#", "--"}, NONE,
+            new String[]{"/*", "*/"}, new String[]{"/**", "*/", "\"\"\"", "\"\"\""},
+            new String[]{"import", "#include", "package", "from"});
+
+    static {
+        var cStyleBlocks = new String[]{"/*", "*/"};
+        var cStyleDocs = new String[]{"/**", "*/"};
+        var cStyleLine = new String[]{"//"};
+
+        register(new CommentGrammar(cStyleLine, NONE, cStyleBlocks, cStyleDocs, new String[]{"#include"}), "c", "h");
+        register(new CommentGrammar(cStyleLine, NONE, cStyleBlocks, cStyleDocs, new String[]{"#include", "import "}), "cpp", "hpp", "cc", "cxx", "hh");
+        register(new CommentGrammar(cStyleLine, NONE, cStyleBlocks, cStyleDocs, new String[]{"import ", "package "}), "java", "kt", "kts", "groovy", "scala", "go");
+        register(new CommentGrammar(cStyleLine, NONE, cStyleBlocks, cStyleDocs, new String[]{"import "}), "js", "jsx", "ts", "tsx", "mjs");
+        register(new CommentGrammar(cStyleLine, new String[]{"///"}, cStyleBlocks, cStyleDocs, new String[]{"import "}), "swift", "dart");
+        register(new CommentGrammar(cStyleLine, new String[]{"///"}, cStyleBlocks, cStyleDocs, new String[]{"using "}), "cs");
+        register(new CommentGrammar(cStyleLine, new String[]{"///", "//!"}, cStyleBlocks, new String[]{"/**", "*/", "/*!", "*/"}, new String[]{"use "}), "rs");
+        register(new CommentGrammar(new String[]{"//", "#"}, NONE, cStyleBlocks, cStyleDocs, new String[]{"use ", "namespace "}), "php");
+        register(new CommentGrammar(NONE, NONE, cStyleBlocks, NONE, new String[]{"@import"}), "css");
+        register(new CommentGrammar(cStyleLine, NONE, cStyleBlocks, NONE, new String[]{"@import", "@use"}), "scss", "sass", "less");
+        register(new CommentGrammar(new String[]{"--"}, NONE, cStyleBlocks, NONE, NONE), "sql");
+        register(new CommentGrammar(NONE, NONE, new String[]{"<!--", "-->"}, NONE, NONE), "html", "htm", "xml", "md");
+        register(new CommentGrammar(NONE, NONE, new String[]{"<!--", "-->", "<%--", "--%>"}, NONE, NONE), "jsp", "asp", "aspx");
+        register(new CommentGrammar(new String[]{"#"}, NONE, NONE, new String[]{"\"\"\"", "\"\"\"", "'''", "'''"}, new String[]{"import ", "from "}), "py");
+        register(new CommentGrammar(new String[]{"#"}, NONE, new String[]{"=begin", "=end"}, NONE, new String[]{"require"}), "rb");
+        register(new CommentGrammar(new String[]{"#"}, NONE, NONE, new String[]{"=pod", "=cut"}, new String[]{"use "}), "pl");
+        register(new CommentGrammar(new String[]{"#"}, NONE, NONE, NONE, new String[]{"source "}), "sh", "bash", "zsh");
+        register(new CommentGrammar(new String[]{"#"}, NONE, new String[]{"<#", "#>"}, NONE, new String[]{"Import-Module"}), "ps1");
+        register(new CommentGrammar(new String[]{"REM ", "rem ", "@REM ", "@rem ", "::"}, NONE, NONE, NONE, NONE), "bat", "cmd");
+        register(new CommentGrammar(new String[]{"--"}, new String[]{"---"}, new String[]{"--[[", "]]"}, NONE, new String[]{"require"}), "lua");
+        register(new CommentGrammar(new String[]{"#"}, new String[]{"#'"}, NONE, NONE, new String[]{"library(", "require("}), "r");
+        register(new CommentGrammar(new String[]{"#"}, NONE, new String[]{"#=", "=#"}, NONE, new String[]{"using ", "import "}), "jl", "julia");
+        register(new CommentGrammar(new String[]{"--"}, NONE, NONE, NONE, new String[]{"with ", "use "}), "ada", "adb", "ads");
+        register(new CommentGrammar(new String[]{"!"}, NONE, NONE, NONE, new String[]{"use ", "include "}), "f", "f90");
+        register(new CommentGrammar(new String[]{";", "#"}, NONE, NONE, NONE, new String[]{"%include", ".include"}), "asm", "s");
+        register(new CommentGrammar(NONE, NONE, NONE, NONE, NONE), "json");
+    }
+
+    /**
+     * A marker at the start of a line. Block markers also have the delimiter that closes them.
+     */
+    static final class Marker {
+        final String open;
+        final String close;
+        final int kind;
+        final int closeIndex;
+
+        Marker(String open, String close, int kind, int closeIndex) {
+            this.open = open;
+            this.close = close;
+            this.kind = kind;
+            this.closeIndex = closeIndex;
+        }
+
+        boolean isBlock() {
+            return kind == BLOCK_COMMENT || kind == BLOCK_DOC;
+        }
+    }
+
+    /**
+     * Markers by first char (ASCII only), longest first
+     */
+    private final Marker[][] markers = new Marker[128][];
+    private final boolean[] opensBlock = new boolean[128];
+    private final boolean[] endsClose = new boolean[128];
+    /**
+     * Distinct block closing delimiters, {@link Marker#closeIndex} points into this
+     */
+    final String[] closeMarkers;
+    /**
+     * Number of chars of a line needed to match any marker
+     */
+    final int prefixLength;
+    /**
+     * Number of chars needed to match any closing delimiter
+     */
+    final int closeLength;
+
+    /**
+     * Block arrays hold pairs of opening and closing delimiters
+     */
+    public CommentGrammar(@NotNull String[] lineComments, @NotNull String[] lineDocs, @NotNull String[] blockComments,
+                          @NotNull String[] blockDocs, @NotNull String[] miscLines) {
+        var all = new ArrayList<Marker>();
+        var closes = new ArrayList<String>();
+        for (var prefix : lineComments) all.add(new Marker(prefix, null, LINE_COMMENT, -1));
+        for (var prefix : lineDocs) all.add(new Marker(prefix, null, LINE_DOC, -1));
+        for (var prefix : miscLines) all.add(new Marker(prefix, null, MISC, -1));
+        addBlocks(all, closes, blockComments, BLOCK_COMMENT);
+        addBlocks(all, closes, blockDocs, BLOCK_DOC);
+
+        all.sort(Comparator.comparingInt((Marker m) -> m.open.length()).reversed());
+        int prefix = 0;
+        for (var marker : all) {
+            char first = marker.open.charAt(0);
+            if (first >= markers.length) throw new IllegalArgumentException("Markers have to start with an ASCII char: " + marker.open);
+            var previous = markers[first];
+            var list = previous == null ? new Marker[1] : Arrays.copyOf(previous, previous.length + 1);
+            list[list.length - 1] = marker;
+            markers[first] = list;
+            opensBlock[first] |= marker.isBlock();
+            prefix = Math.max(prefix, marker.open.length());
+        }
+        prefixLength = prefix;
+        for (var close : closes) {
+            char end = close.charAt(close.length() - 1);
+            if (end >= endsClose.length) throw new IllegalArgumentException("Markers have to end with an ASCII char: " + close);
+            endsClose[end] = true;
+        }
+        closeMarkers = closes.toArray(NONE);
+        closeLength = closes.stream().mapToInt(String::length).max().orElse(0);
+    }
+
+    private static void addBlocks(ArrayList<Marker> all, ArrayList<String> closes, String[] blocks, int kind) {
+        if (blocks.length % 2 != 0) throw new IllegalArgumentException("Block delimiters have to come in pairs");
+        for (int i = 0; i < blocks.length; i += 2) {
+            int closeIndex = closes.indexOf(blocks[i + 1]);
+            if (closeIndex == -1) {
+                closeIndex = closes.size();
+                closes.add(blocks[i + 1]);
+            }
+            all.add(new Marker(blocks[i], blocks[i + 1], kind, closeIndex));
+        }
+    }
+
+    /**
+     * Registers the grammar for the given extensions (without dot), replacing any previous one
+     */
+    public static void register(@NotNull CommentGrammar grammar, @NotNull String... extensions) {
+        for (var extension : extensions) {
+            GRAMMARS.put(extension, grammar);
+        }
+    }
+
+    public static @NotNull CommentGrammar forExtension(@NotNull String extension) {
+        return GRAMMARS.getOrDefault(extension, GENERIC);
+    }
+
+    boolean opensBlock(char first) {
+        return first < opensBlock.length && opensBlock[first];
+    }
+
+    boolean endsClose(char last) {
+        return last < endsClose.length && endsClose[last];
+    }
+
+    /**
+     * Finds the marker a line starts with.
+     * A block that's closed again on the same line wins over a longer one that isn't, so "/**&#47;" is an empty comment.
+     *
+     * @param prefix   the first non whitespace chars of the line
+     * @param closeEnd per closing delimiter the end of its last occurrence, counted from the line prefix; 0 if none
+     * @return the marker or null for a code line
+     */
+    Marker match(char[] prefix, int length, int[] closeEnd) {
+        if (length == 0 || prefix[0] >= markers.length) return null;
+        var candidates = markers[prefix[0]];
+        if (candidates == null) return null;
+        Marker first = null;
+        for (var marker : candidates) {
+            if (!startsWith(prefix, length, marker.open)) continue;
+            boolean isUnclosedBlock = marker.isBlock() && closeEnd[marker.closeIndex] < marker.open.length() + marker.close.length();
+            if (first == null) {
+                first = marker;
+                if (!isUnclosedBlock) return marker;
+            } else if (marker.isBlock() && !isUnclosedBlock) {
+                return marker;
+            }
+        }
+        return first;
+    }
+
+    private static boolean startsWith(char[] prefix, int length, String marker) {
+        int markerLength = marker.length();
+        if (length < markerLength) return false;
+        for (int i = 0; i < markerLength; i++) {
+            if (prefix[i] != marker.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The stats of file contents, so byte-identical files like vendored copies or generated stubs are counted once. Thread safe. <br>
+ * Tracked and unmodified files are found by the git blob id from the {@link GitIndex} without reading them.
+ * Other files are only hashed once a file of the same size and extension was seen before, most files have a unique size and are never hashed.
+ * The hash is a 128-bit MurmurHash3 streamed through a reused direct buffer, keyed with the size.
+ */
+final class ContentCache {
+    private static final int BUFFER_SIZE = 64 << 10;
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private final ConcurrentHashMap<Object, FileRecord> records = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<SizeKey, FirstOfSize> sizes = new ConcurrentHashMap<>();
+    final GitIndex index;
+
+    /**
+     * The same content counts differently depending on the extension
+     */
+    private record IdKey(GitRepository.ObjectId id, String extension) {
+    }
+
+    private record HashKey(long high, long low, long size, String extension) {
+    }
+
+    private record SizeKey(long size, String extension) {
+    }
+
+    /**
+     * The first file of a size, it's hashed when a second one shows up
+     */
+    private static final class FirstOfSize {
+        final Path path;
+        FileRecord record;
+        boolean isWanted;
+        boolean isHashed;
+
+        FirstOfSize(Path path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * The result of {@link #lookup(FileInfo, String)}, pass it back to {@link #parsed(Lookup, FileRecord)}
+     *
+     * @param known the stats of another file with the same content or null
+     */
+    record Lookup(FirstOfSize first, HashKey key, FileRecord known) {
+    }
+
+    ContentCache(GitIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @return the id of the file from the git index or null if it's unknown or changed
+     */
+    GitRepository.ObjectId indexedId(FileInfo file) {
+        return index.blobId(file);
+    }
+
+    /**
+     * @return the stats of another file with the same blob id or null
+     */
+    FileRecord get(GitRepository.ObjectId id, String extension) {
+        return records.get(new IdKey(id, extension));
+    }
+
+    void put(GitRepository.ObjectId id, String extension, FileRecord record) {
+        records.putIfAbsent(new IdKey(id, extension), record);
+    }
+
+    /**
+     * Looks for a file with the same content that wasn't found by its blob id. The file is only read if the size and extension were seen before.
+     */
+    Lookup lookup(FileInfo file, String extension) {
+        var sizeKey = new SizeKey(file.size, extension);
+        var first = new FirstOfSize(file.path);
+        var existing = sizes.putIfAbsent(sizeKey, first);
+        if (existing == null) {
+            return new Lookup(first, null, null);
+        }
+        boolean hashFirst;
+        synchronized (existing) {
+            existing.isWanted = true;
+            hashFirst = existing.record != null && !existing.isHashed;
+            existing.isHashed |= hashFirst;
+        }
+        if (hashFirst) {
+            putHashed(existing, extension);
+        }
+        var key = hash(file.path, extension);
+        return new Lookup(null, key, key == null ? null : records.get(key));
+    }
+
+    /**
+     * Stores the stats of a file that wasn't known
+     */
+    void parsed(Lookup lookup, FileRecord record) {
+        var first = lookup.first;
+        if (first == null) {
+            if (lookup.key != null) records.putIfAbsent(lookup.key, record);
+            return;
+        }
+        boolean hashFirst;
+        synchronized (first) {
+            first.record = record;
+            hashFirst = first.isWanted && !first.isHashed;
+            first.isHashed |= hashFirst;
+        }
+        // Another file of this size showed up while this one was parsed
+        if (hashFirst) {
+            putHashed(first, record.extension);
+        }
+    }
+
+    private void putHashed(FirstOfSize first, String extension) {
+        var key = hash(first.path, extension);
+        if (key != null) records.putIfAbsent(key, first.record);
+    }
+
+    /**
+     * @return the 128-bit MurmurHash3 of the file with its length or null if it couldn't be read
+     */
+    private static HashKey hash(Path path, String extension) {
+        var buffer = BUFFER.get().clear();
+        long h1 = 0;
+        long h2 = 0;
+        long length = 0;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.remaining() >= 16) {
+                    h1 ^= mixK1(buffer.getLong());
+                    h1 = Long.rotateLeft(h1, 27) + h2;
+                    h1 = h1 * 5 + 0x52dce729;
+                    h2 ^= mixK2(buffer.getLong());
+                    h2 = Long.rotateLeft(h2, 31) + h1;
+                    h2 = h2 * 5 + 0x38495ab5;
+                    length += 16;
+                }
+                buffer.compact();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        buffer.flip();
+        int tail = buffer.remaining();
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = tail - 1; i >= 8; i--) {
+            k2 = k2 << 8 | buffer.get(i) & 0xff;
+        }
+        for (int i = Math.min(tail, 8) - 1; i >= 0; i--) {
+            k1 = k1 << 8 | buffer.get(i) & 0xff;
+        }
+        if (tail > 8) h2 ^= mixK2(k2);
+        if (tail > 0) h1 ^= mixK1(k1);
+        length += tail;
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new HashKey(h1, h2, length, extension);
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9a62fe63a53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Line totals extrapolated from a sample of files per extension, see {@link FileSample}. <br>
+ * Counts and sizes are exact as every file is still visited. The lines of an extension are estimated with the ratio of lines to bytes
+ * in its sample times its total size, as those are closely related for text files. The error is the 95% confidence interval of that ratio estimator
+ * (with finite population correction), the extensions are independent strata so their variances add up.
+ */
+final class Estimate {
+    /**
+     * Files read per extension
+     */
+    static final int SAMPLE_SIZE = 256;
+    private static final double Z_95 = 1.96;
+    final HashMap<String, OverViewEntry> overView = new HashMap<>();
+    long lines;
+    long linesError;
+    long codeLines;
+    long codeLinesError;
+    int sampledFiles;
+    int totalFiles;
+
+    /**
+     * @param walked a walk with {@link #SAMPLE_SIZE}, holding the exact counts and sizes
+     * @param parsed the parsed files of the samples
+     */
+    static Estimate of(ScanResult walked, ScanResult parsed) {
+        var estimate = new Estimate();
+        double linesVariance = 0;
+        double codeLinesVariance = 0;
+        for (var pair : walked.overView.entrySet()) {
+            var exact = pair.getValue();
+            var sample = walked.samples.get(pair.getKey());
+            List<FileInfo> files = sample == null ? List.of() : sample.files();
+
+            int n = 0;
+            long sampleSize = 0;
+            long sampleLines = 0;
+            long sampleCodeLines = 0;
+            var entry = new OverViewEntry();
+            long[] sizes = new long[files.size()];
+            int[] lines = new int[files.size()];
+            int[] codeLines = new int[files.size()];
+            for (var file : files) {
+                int row = parsed.files.find(file.path);
+                if (row == -1) continue; // Unreadable or gone
+                sizes[n] = parsed.files.getSize(row);
+                lines[n] = parsed.files.get(row, StatTable.TOTAL);
+                codeLines[n] = parsed.files.get(row, StatTable.SOURCE_CODE);
+                sampleSize += sizes[n];
+                sampleLines += lines[n];
+                sampleCodeLines += codeLines[n];
+                entry.addValues(sizes[n], lines[n], codeLines[n]);
+                n++;
+            }
+
+            int count = exact.count;
+            var totalLines = new double[2];
+            var totalCodeLines = new double[2];
+            ratioEstimate(count, exact.sizeSum, n, sizes, lines, sampleSize, sampleLines, totalLines);
+            ratioEstimate(count, exact.sizeSum, n, sizes, codeLines, sampleSize, sampleCodeLines, totalCodeLines);
+            linesVariance += totalLines[1];
+            codeLinesVariance += totalCodeLines[1];
+
+            // Exact file stats, estimated line totals and the line range of the sample
+            entry.count = count;
+            entry.sizeSum = exact.sizeSum;
+            entry.sizeMin = exact.sizeMin;
+            entry.sizeMax = exact.sizeMax;
+            entry.lines = (int) Math.min(Math.round(totalLines[0]), Integer.MAX_VALUE);
+            entry.linesCode = (int) Math.min(Math.round(totalCodeLines[0]), Integer.MAX_VALUE);
+            if (n == 0) {
+                entry.linesMin = 0;
+            }
+            estimate.overView.put(pair.getKey(), entry);
+            estimate.lines += Math.round(totalLines[0]);
+            estimate.codeLines += Math.round(totalCodeLines[0]);
+            estimate.sampledFiles += n;
+            estimate.totalFiles += count;
+        }
+        estimate.linesError = Math.round(Z_95 * Math.sqrt(linesVariance));
+        estimate.codeLinesError = Math.round(Z_95 * Math.sqrt(codeLinesVariance));
+        return estimate;
+    }
+
+    /**
+     * @param result receives the estimated total and its variance
+     */
+    private static void ratioEstimate(int count, long totalSize, int n, long[] sizes, int[] values, long sampleSize, long sampleSum, double[] result) {
+        if (n == 0) {
+            return;
+        }
+        if (n == count) {
+            result[0] = sampleSum; // Every file was read
+            return;
+        }
+        if (sampleSize == 0) {
+            // Only empty files in the sample, fall back to the mean
+            result[0] = (double) sampleSum / n * count;
+            return;
+        }
+        double ratio = (double) sampleSum / sampleSize;
+        result[0] = ratio * totalSize;
+        if (n < 2) {
+            return;
+        }
+        double squaredResiduals = 0;
+        for (int i = 0; i < n; i++) {
+            double residual = values[i] - ratio * sizes[i];
+            squaredResiduals += residual * residual;
+        }
+        result[1] = (double) count * count * (1 - (double) n / count) / n * (squaredResiduals / (n - 1));
+    }
+}
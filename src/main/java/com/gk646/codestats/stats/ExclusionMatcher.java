@@ -0,0 +1,219 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The excluded directories and regexes of the settings, compiled once per {@link ScanEngine}. <br>
+ * Directories are stored as a trie of path segments, so the walk only follows one child per entry instead of building the absolute path string.
+ * The regexes are joined into a single alternation, matched against the relative path of an entry in a reused per-thread buffer.
+ * If enabled, the rules of the .gitignore and .ignore files are matched against the same buffer, see {@link IgnoreRules}.
+ */
+final class ExclusionMatcher {
+    static final ExclusionMatcher NONE = new ExclusionMatcher(null, List.of(), List.of(), false);
+    // Numbered and named backreferences can't be moved into a combined pattern
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+    private final Path projectPath;
+    private final Node root = new Node();
+    private final Pattern combined;
+    private final Pattern[] separate;
+    private final boolean useIgnoreFiles;
+    private final ThreadLocal<Matcher> matcher;
+    private final ThreadLocal<StringBuilder> buffer = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    /**
+     * One path segment of the excluded directories
+     */
+    static final class Node {
+        private final HashMap<String, Node> children = new HashMap<>(4);
+        private boolean isExcluded;
+
+        /**
+         * @return the node of the given subdirectory or null if no excluded directory lies below it
+         */
+        Node child(String name) {
+            return children.get(name);
+        }
+
+        boolean isExcluded() {
+            return isExcluded;
+        }
+    }
+
+    /**
+     * @param excludedDirs absolute directory paths, others can never match and are ignored
+     */
+    ExclusionMatcher(Path projectPath, Collection<String> excludedDirs, List<Pattern> regexes, boolean useIgnoreFiles) {
+        this.projectPath = projectPath;
+        this.useIgnoreFiles = useIgnoreFiles;
+        for (String dir : excludedDirs) {
+            Path path = Path.of(dir);
+            if (path.getRoot() == null) continue;
+            Node node = root.children.computeIfAbsent(path.getRoot().toString(), k -> new Node());
+            for (Path segment : path) {
+                node = node.children.computeIfAbsent(segment.toString(), k -> new Node());
+            }
+            node.isExcluded = true;
+        }
+
+        this.combined = combine(regexes);
+        this.separate = combined == null ? regexes.toArray(new Pattern[0]) : new Pattern[0];
+        this.matcher = combined == null ? null : ThreadLocal.withInitial(() -> combined.matcher(""));
+    }
+
+    private static Pattern combine(List<Pattern> regexes) {
+        if (regexes.isEmpty()) return null;
+        if (regexes.size() == 1) return regexes.get(0);
+        var sb = new StringBuilder();
+        for (Pattern pattern : regexes) {
+            if (pattern.flags() != 0 || BACK_REFERENCE.matcher(pattern.pattern()).find()) return null;
+            if (!sb.isEmpty()) sb.append('|');
+            sb.append("(?:").append(pattern.pattern()).append(')');
+        }
+        try {
+            return Pattern.compile(sb.toString());
+        } catch (PatternSyntaxException e) {
+            return null; // e.g. the same group name in two patterns, those are matched one by one
+        }
+    }
+
+    /**
+     * @return the trie node of the given absolute directory or null if no excluded directory lies below it
+     */
+    Node locate(Path directory) {
+        Path pathRoot = directory.getRoot();
+        Node node = pathRoot == null ? null : root.child(pathRoot.toString());
+        for (int i = 0; node != null && i < directory.getNameCount(); i++) {
+            node = node.child(directory.getName(i).toString());
+        }
+        return node;
+    }
+
+    boolean hasRegexes() {
+        return combined != null || separate.length > 0;
+    }
+
+    boolean usesIgnoreFiles() {
+        return useIgnoreFiles;
+    }
+
+    /**
+     * @return true if the walk has to track the relative path of its directories
+     */
+    boolean needsRelativePath() {
+        return useIgnoreFiles || hasRegexes();
+    }
+
+    /**
+     * @return the ignore rules that apply to the entries of the given directory, {@link IgnoreRules#NONE} if disabled
+     */
+    IgnoreRules rulesFor(Path directory) {
+        return useIgnoreFiles ? IgnoreRules.forDirectory(projectPath, directory) : IgnoreRules.NONE;
+    }
+
+    /**
+     * @return the ignore rules of the parent directories of a walk root, its own files are read by the walk
+     */
+    IgnoreRules parentRulesFor(Path root) {
+        if (!useIgnoreFiles || root.equals(projectPath) || !root.startsWith(projectPath)) return IgnoreRules.NONE;
+        return IgnoreRules.forDirectory(projectPath, root.getParent());
+    }
+
+    /**
+     * @return the path of the given directory relative to the project root, with '/' as separator
+     */
+    String relativize(Path path) {
+        // Needed for platform independent regex
+        return projectPath.relativize(path).toString().replace('\\', '/');
+    }
+
+    /**
+     * @param parent relative path of the parent directory as returned by {@link #relativize(Path)}
+     * @return the relative path of the given entry, allocated once per directory
+     */
+    static String child(String parent, String name) {
+        return parent.isEmpty() ? name : parent + '/' + name;
+    }
+
+    /**
+     * Checks a subdirectory during a walk
+     *
+     * @param relativePath as returned by {@link #child(String, String)}
+     */
+    boolean isExcludedDirectory(String relativePath, IgnoreRules rules) {
+        return matchesRegex(relativePath) || rules.isIgnored(relativePath, true);
+    }
+
+    /**
+     * Checks a file during a walk without allocating its relative path
+     */
+    boolean isExcludedFile(String parent, String name, IgnoreRules rules) {
+        var sb = buffer.get();
+        sb.setLength(0);
+        if (!parent.isEmpty()) sb.append(parent).append('/');
+        sb.append(name);
+        return matchesRegex(sb) || rules.isIgnored(sb, false);
+    }
+
+    boolean matchesRegex(CharSequence relativePath) {
+        if (combined != null) {
+            return matcher.get().reset(relativePath).matches();
+        }
+        for (Pattern pattern : separate) {
+            if (pattern.matcher(relativePath).matches()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks a single directory, used outside a walk
+     */
+    boolean isExcludedDirectory(Path directory) {
+        Node node = locate(directory);
+        if (node != null && node.isExcluded) return true;
+        if (!needsRelativePath()) return false;
+        String relativePath = relativize(directory);
+        if (matchesRegex(relativePath)) return true;
+        return useIgnoreFiles && directory.getParent() != null && !directory.equals(projectPath)
+                && rulesFor(directory.getParent()).isIgnored(relativePath, true);
+    }
+
+    /**
+     * Checks a single file, used outside a walk. Doesn't check its parent directories.
+     */
+    boolean isExcludedFile(Path file) {
+        if (!needsRelativePath()) return false;
+        String relativePath = relativize(file);
+        return matchesRegex(relativePath) || useIgnoreFiles && rulesFor(file.getParent()).isIgnored(relativePath, false);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * The metadata of a file, read once by the walker and passed on to the parsing, so no file costs more than one metadata lookup.
+ */
+final class FileInfo {
+    final Path path;
+    final String name;
+    final long size;
+    final long lastModified;
+    /**
+     * Identity of the file if the file system has one (device and inode on unix), null otherwise
+     */
+    final Object fileKey;
+
+    FileInfo(Path path, String name, BasicFileAttributes attrs) {
+        this.path = path;
+        this.name = name;
+        this.size = attrs.size();
+        this.lastModified = attrs.lastModifiedTime().toMillis();
+        this.fileKey = attrs.fileKey();
+    }
+
+    FileInfo(Path path, BasicFileAttributes attrs) {
+        this(path, path.getFileName().toString(), attrs);
+    }
+
+    /**
+     * Links count with the size and date of their target. This is the only case that needs a second lookup.
+     *
+     * @param attrs read without following links
+     * @return the attributes of the link target if it's a file, else the given ones
+     */
+    static BasicFileAttributes resolveLink(Path path, BasicFileAttributes attrs) {
+        if (!attrs.isSymbolicLink()) return attrs;
+        try {
+            var target = Files.readAttributes(path, BasicFileAttributes.class);
+            return target.isDirectory() ? attrs : target;
+        } catch (IOException e) {
+            return attrs; // Broken link
+        }
+    }
+}
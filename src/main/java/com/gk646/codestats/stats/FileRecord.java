@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+/**
+ * The contribution of a single file while it is parsed or cached, a {@link ScanResult} keeps it as a row of its {@link FileTable}.
+ */
+final class FileRecord {
+    final String extension;
+    final long size;
+    /**
+     * Milliseconds since the epoch, together with the size used to detect changes by {@link StatsCache}
+     */
+    final long lastModified;
+    final int totalLines;
+    /**
+     * Only true if the extension has a separate tab, then the line counts below are set
+     */
+    final boolean hasTabStats;
+    final int sourceCodeLines;
+    final int commentLines;
+    final int docLines;
+    final int blankLines;
+
+    /**
+     * A file that is only shown in the OverView tab
+     */
+    FileRecord(String extension, long size, long lastModified, int totalLines) {
+        this(extension, size, lastModified, totalLines, false, 0, 0, 0, 0);
+    }
+
+    /**
+     * A file of a separate tab type
+     */
+    FileRecord(String extension, long size, long lastModified, int totalLines, int sourceCodeLines, int commentLines, int docLines, int blankLines) {
+        this(extension, size, lastModified, totalLines, true, sourceCodeLines, commentLines, docLines, blankLines);
+    }
+
+    private FileRecord(String extension, long size, long lastModified, int totalLines, boolean hasTabStats, int sourceCodeLines, int commentLines, int docLines, int blankLines) {
+        this.extension = extension;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.totalLines = totalLines;
+        this.hasTabStats = hasTabStats;
+        this.sourceCodeLines = sourceCodeLines;
+        this.commentLines = commentLines;
+        this.docLines = docLines;
+        this.blankLines = blankLines;
+    }
+
+    /**
+     * @return the same counts for another file with the same content
+     */
+    FileRecord forFile(long size, long lastModified) {
+        return new FileRecord(extension, size, lastModified, totalLines, hasTabStats, sourceCodeLines, commentLines, docLines, blankLines);
+    }
+
+    /**
+     * @return the same file for the OverView tab only
+     */
+    FileRecord withoutTabStats() {
+        return hasTabStats ? new FileRecord(extension, size, lastModified, totalLines) : this;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A uniform sample of up to {@link #capacity} files, used by the estimate mode instead of reading every file. <br>
+ * Each file gets a pseudo random priority from its path and the files with the lowest priorities are kept (a bottom-k sample).
+ * Unlike reservoir sampling this can be merged in any grouping like {@link ScanResult#merge(ScanResult)},
+ * and the same tree always gives the same sample.
+ */
+final class FileSample {
+    private final int capacity;
+    /**
+     * Highest priority on top, so it's the one replaced
+     */
+    private final PriorityQueue<Entry> entries = new PriorityQueue<>((a, b) -> Long.compare(b.priority, a.priority));
+
+    private record Entry(long priority, FileInfo file) {
+    }
+
+    FileSample(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void offer(FileInfo file) {
+        offer(new Entry(priority(file.path), file));
+    }
+
+    private void offer(Entry entry) {
+        if (entries.size() < capacity) {
+            entries.add(entry);
+        } else if (entry.priority < entries.peek().priority) {
+            entries.poll();
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * @param other is not modified
+     */
+    void merge(FileSample other) {
+        for (var entry : other.entries) {
+            offer(entry);
+        }
+    }
+
+    List<FileInfo> files() {
+        var files = new ArrayList<FileInfo>(entries.size());
+        for (var entry : entries) {
+            files.add(entry.file);
+        }
+        return files;
+    }
+
+    /**
+     * The finalizer of SplitMix64, spreads the path hash over all 64 bits
+     */
+    private static long priority(Path path) {
+        long z = path.hashCode() * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * What each file of a {@link ScanResult} contributed, stored by column. The {@link StatTable}s only hold row numbers into it. <br>
+ * A file is keyed by the id of its directory and the id of its name, both interned in {@link NameTable}s, instead of a {@link Path} and an object per file.
+ * Rows are only appended, {@link IncrementalScan} copies the rows it keeps into a new table.
+ */
+final class FileTable {
+    private final NameTable names;
+    private final NameTable directories = new NameTable();
+    private final ArrayList<String> extensions = new ArrayList<>();
+    private final HashMap<String, Integer> extensionIndex = new HashMap<>();
+    private int size;
+    private int[] directoryIds = new int[16];
+    private int[] nameIds = new int[16];
+    private int[] extensionIds = new int[16];
+    private long[] sizes = new long[16];
+    private long[] lastModified = new long[16];
+    private boolean[] hasTabStats = new boolean[16];
+    /**
+     * Indexed by the {@link StatTable} metrics, only {@link StatTable#TOTAL} is set for files without tab stats
+     */
+    private final int[][] metrics = new int[StatTable.METRIC_COUNT][16];
+    /**
+     * Row + 1 of the file in each slot, 0 for a free one
+     */
+    private int[] slots = new int[32];
+
+    FileTable(NameTable names) {
+        this.names = names;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the row of the file, a file that was already added is replaced in lookups but its old row stays
+     */
+    int add(Path path, FileRecord record) {
+        int row = append(directories.intern(directoryOf(path)), names.intern(path.getFileName().toString()), extensionId(record.extension));
+        sizes[row] = record.size;
+        lastModified[row] = record.lastModified;
+        hasTabStats[row] = record.hasTabStats;
+        metrics[StatTable.TOTAL][row] = record.totalLines;
+        metrics[StatTable.SOURCE_CODE][row] = record.sourceCodeLines;
+        metrics[StatTable.COMMENT][row] = record.commentLines;
+        metrics[StatTable.DOC][row] = record.docLines;
+        metrics[StatTable.BLANK][row] = record.blankLines;
+        return row;
+    }
+
+    /**
+     * Appends the rows of another table
+     *
+     * @param nameIds maps the name ids of the other table to ids of this one, see {@link NameTable#internAll(NameTable)}
+     * @param skipped rows of the other table that are left out, may be null
+     */
+    void addAll(FileTable other, int[] nameIds, BitSet skipped) {
+        var directoryIds = directories.internAll(other.directories);
+        var extensionIds = new int[other.extensions.size()];
+        for (int i = 0; i < extensionIds.length; i++) {
+            extensionIds[i] = extensionId(other.extensions.get(i));
+        }
+        ensureCapacity(size + other.size);
+        for (int from = 0; from < other.size; from++) {
+            if (skipped != null && skipped.get(from)) continue;
+            int row = append(directoryIds[other.directoryIds[from]], nameIds[other.nameIds[from]], extensionIds[other.extensionIds[from]]);
+            sizes[row] = other.sizes[from];
+            lastModified[row] = other.lastModified[from];
+            hasTabStats[row] = other.hasTabStats[from];
+            for (int metric = 0; metric < StatTable.METRIC_COUNT; metric++) {
+                metrics[metric][row] = other.metrics[metric][from];
+            }
+        }
+    }
+
+    /**
+     * Doesn't write to the table, so once it's filled any number of threads can look up files at the same time
+     *
+     * @return the row of the file or -1 if it wasn't added
+     */
+    int find(Path path) {
+        int directoryId = directories.find(directoryOf(path));
+        if (directoryId == -1) return -1;
+        int nameId = names.find(path.getFileName().toString());
+        if (nameId == -1) return -1;
+        return slots[slotOf(directoryId, nameId)] - 1;
+    }
+
+    Path getPath(int row) {
+        return Path.of(directories.get(directoryIds[row]), names.get(nameIds[row]));
+    }
+
+    /**
+     * @return the file name including the filetype e.g. "EventHandler.java"
+     */
+    String getName(int row) {
+        return names.get(nameIds[row]);
+    }
+
+    int compareNames(int rowA, int rowB) {
+        return names.compare(nameIds[rowA], nameIds[rowB]);
+    }
+
+    String getExtension(int row) {
+        return extensions.get(extensionIds[row]);
+    }
+
+    long getSize(int row) {
+        return sizes[row];
+    }
+
+    long getLastModified(int row) {
+        return lastModified[row];
+    }
+
+    boolean hasTabStats(int row) {
+        return hasTabStats[row];
+    }
+
+    /**
+     * @param metric one of the {@link StatTable} metrics
+     */
+    int get(int row, int metric) {
+        return metrics[metric][row];
+    }
+
+    /**
+     * @return the row as a record, for callers that pass it on
+     */
+    FileRecord getRecord(int row) {
+        if (!hasTabStats[row]) {
+            return new FileRecord(getExtension(row), sizes[row], lastModified[row], metrics[StatTable.TOTAL][row]);
+        }
+        return new FileRecord(getExtension(row), sizes[row], lastModified[row], metrics[StatTable.TOTAL][row], metrics[StatTable.SOURCE_CODE][row],
+                metrics[StatTable.COMMENT][row], metrics[StatTable.DOC][row], metrics[StatTable.BLANK][row]);
+    }
+
+    int getDirectoryId(int row) {
+        return directoryIds[row];
+    }
+
+    int directoryCount() {
+        return directories.size();
+    }
+
+    String getDirectory(int directoryId) {
+        return directories.get(directoryId);
+    }
+
+    private static String directoryOf(Path path) {
+        var parent = path.getParent();
+        return parent == null ? "" : parent.toString();
+    }
+
+    private int extensionId(String extension) {
+        var id = extensionIndex.get(extension);
+        if (id == null) {
+            id = extensions.size();
+            extensions.add(extension);
+            extensionIndex.put(extension, id);
+        }
+        return id;
+    }
+
+    private int append(int directoryId, int nameId, int extensionId) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        directoryIds[row] = directoryId;
+        nameIds[row] = nameId;
+        extensionIds[row] = extensionId;
+        slots[slotOf(directoryId, nameId)] = row + 1;
+        if (size * 2 > slots.length) rehash();
+        return row;
+    }
+
+    /**
+     * @return the slot of the file or the free slot it belongs in
+     */
+    private int slotOf(int directoryId, int nameId) {
+        int mask = slots.length - 1;
+        for (int slot = mix(directoryId, nameId) & mask; ; slot = (slot + 1) & mask) {
+            int row = slots[slot] - 1;
+            if (row == -1 || directoryIds[row] == directoryId && nameIds[row] == nameId) return slot;
+        }
+    }
+
+    private void rehash() {
+        var old = slots;
+        slots = new int[old.length * 2];
+        for (int entry : old) {
+            if (entry != 0) slots[slotOf(directoryIds[entry - 1], nameIds[entry - 1])] = entry;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= nameIds.length) return;
+        int newCapacity = Math.max(capacity, nameIds.length + (nameIds.length >> 1));
+        directoryIds = Arrays.copyOf(directoryIds, newCapacity);
+        nameIds = Arrays.copyOf(nameIds, newCapacity);
+        extensionIds = Arrays.copyOf(extensionIds, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        lastModified = Arrays.copyOf(lastModified, newCapacity);
+        hasTabStats = Arrays.copyOf(hasTabStats, newCapacity);
+        for (int metric = 0; metric < StatTable.METRIC_COUNT; metric++) {
+            metrics[metric] = Arrays.copyOf(metrics[metric], newCapacity);
+        }
+    }
+
+    private static int mix(int directoryId, int nameId) {
+        int h = (directoryId * 31 + nameId) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
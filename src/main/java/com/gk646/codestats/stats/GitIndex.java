@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+
+/**
+ * The blob ids of the tracked files of a git work tree, read from its index file without a git executable. <br>
+ * An id is only returned while the file still has the size and modification time git recorded, so it names the content without reading the file.
+ * Like git, entries modified at or after the index was written are not trusted.
+ */
+final class GitIndex {
+    static final GitIndex EMPTY = new GitIndex(null, null, 0, 0, new HashMap<>());
+    private static final int SIGNATURE = 0x44495243; // "DIRC"
+    private static final int ENTRY_HEADER = 62;
+    private final Path workTree;
+    private final Path file;
+    private final long fileModified;
+    private final long fileSize;
+    private final HashMap<String, Entry> entries;
+
+    /**
+     * @param modified the modification time in milliseconds
+     */
+    private record Entry(long modified, int size, GitRepository.ObjectId id) {
+    }
+
+    private GitIndex(Path workTree, Path file, long fileModified, long fileSize, HashMap<String, Entry> entries) {
+        this.workTree = workTree;
+        this.file = file;
+        this.fileModified = fileModified;
+        this.fileSize = fileSize;
+        this.entries = entries;
+    }
+
+    /**
+     * @param previous returned as is if its index file didn't change, may be null
+     * @return the index of the work tree that contains the given directory, {@link #EMPTY} if there is none or it can't be read
+     */
+    static GitIndex read(Path directory, GitIndex previous) {
+        try {
+            var location = directory == null ? null : GitRepository.locate(directory);
+            if (location == null) return EMPTY;
+            Path file = location.gitDir().resolve("index");
+            if (!Files.isRegularFile(file)) return EMPTY;
+            var attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            long modified = attrs.lastModifiedTime().toMillis();
+            if (previous != null && file.equals(previous.file) && previous.fileModified == modified && previous.fileSize == attrs.size()) {
+                return previous;
+            }
+            var entries = parse(Files.readAllBytes(file));
+            return entries == null ? EMPTY : new GitIndex(location.workTree(), file, modified, attrs.size(), entries);
+        } catch (IOException | RuntimeException e) {
+            return EMPTY;
+        }
+    }
+
+    /**
+     * @return the entries of stage 0 by path relative to the work tree, or null for an unknown format
+     */
+    private static HashMap<String, Entry> parse(byte[] data) {
+        var buffer = ByteBuffer.wrap(data);
+        int version = buffer.getInt(4);
+        if (buffer.getInt(0) != SIGNATURE || version < 2 || version > 4) return null;
+        int count = buffer.getInt(8);
+        var entries = new HashMap<String, Entry>(count * 2);
+        byte[] previousName = new byte[0];
+        int position = 12;
+        for (int i = 0; i < count; i++) {
+            // ctime, mtime, dev, ino, mode, uid, gid and size as 32 bit values, the id and 16 bit flags
+            long modified = (buffer.getInt(position + 8) & 0xFFFFFFFFL) * 1000 + buffer.getInt(position + 12) / 1_000_000;
+            int mode = buffer.getInt(position + 24);
+            int size = buffer.getInt(position + 36);
+            var id = GitRepository.ObjectId.of(data, position + 40);
+            int flags = buffer.getShort(position + 60) & 0xFFFF;
+            int nameStart = position + ENTRY_HEADER;
+            if (version >= 3 && (flags & 0x4000) != 0) nameStart += 2;
+            byte[] name;
+            if (version == 4) {
+                // The name is the previous one without its last n bytes plus a new suffix
+                int b = data[nameStart++] & 0xFF;
+                int strip = b & 0x7F;
+                while ((b & 0x80) != 0) {
+                    b = data[nameStart++] & 0xFF;
+                    strip = ((strip + 1) << 7) | (b & 0x7F);
+                }
+                int end = nameEnd(data, nameStart);
+                int kept = previousName.length - strip;
+                name = new byte[kept + end - nameStart];
+                System.arraycopy(previousName, 0, name, 0, kept);
+                System.arraycopy(data, nameStart, name, kept, end - nameStart);
+                position = end + 1;
+            } else {
+                int end = nameEnd(data, nameStart);
+                name = new byte[end - nameStart];
+                System.arraycopy(data, nameStart, name, 0, name.length);
+                // Padded with 1 to 8 NUL bytes to a multiple of 8
+                position += (end - position + 8) & ~7;
+            }
+            previousName = name;
+            // Only regular files without merge conflicts
+            if ((flags & 0x3000) == 0 && (mode & 0xF000) == 0x8000) {
+                entries.put(new String(name, StandardCharsets.UTF_8), new Entry(modified, size, id));
+            }
+        }
+        return entries;
+    }
+
+    private static int nameEnd(byte[] data, int from) {
+        int end = from;
+        while (data[end] != 0) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return the blob id of the file if it's tracked and unchanged since git last looked at it, else null
+     */
+    GitRepository.ObjectId blobId(FileInfo file) {
+        if (entries.isEmpty() || !file.path.startsWith(workTree)) return null;
+        var entry = entries.get(workTree.relativize(file.path).toString().replace('\\', '/'));
+        // Sizes are stored truncated to 32 bit
+        if (entry == null || entry.size != (int) file.size || entry.modified >= fileModified) return null;
+        return entry.modified == file.lastModified ? entry.id : null;
+    }
+}
@@ -0,0 +1,596 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads commits and trees straight from a local .git directory, without a git executable or network access. <br>
+ * Supports loose objects, version 2 pack files with both kinds of deltas, alternates and linked work trees. Only SHA-1 repositories are supported.
+ * Reads are thread safe: pack files are read with positional reads and resolved delta bases are shared in a small cache.
+ */
+final class GitRepository implements Closeable {
+    static final int COMMIT = 1;
+    static final int TREE = 2;
+    static final int BLOB = 3;
+    static final int TAG = 4;
+    private static final int OFS_DELTA = 6;
+    private static final int REF_DELTA = 7;
+    private static final int ID_LENGTH = 20;
+    private static final int MAX_REF_DEPTH = 5;
+    private static final long BASE_CACHE_BYTES = 32L << 20;
+    private static final Pattern SHA256_FORMAT = Pattern.compile("(?im)^\\s*objectformat\\s*=\\s*sha256\\s*$");
+    private static final HexFormat HEX = HexFormat.of();
+
+    /**
+     * The directory that contains the .git directory or file
+     */
+    final Path workTree;
+    private final Path gitDir;
+    /**
+     * Shared by all work trees of a repository, same as {@link #gitDir} for the main one
+     */
+    private final Path commonDir;
+    private final List<Path> objectDirectories = new ArrayList<>(2);
+    private final List<Pack> packs = new ArrayList<>();
+    private final LinkedHashMap<BaseKey, GitObject> baseCache = new LinkedHashMap<>(64, 0.75f, true);
+    private long baseCacheBytes;
+
+    /**
+     * A SHA-1 object id as three numbers, cheap to hash and compare
+     */
+    record ObjectId(long high, long middle, int low) {
+        static ObjectId of(byte[] bytes, int offset) {
+            var buffer = ByteBuffer.wrap(bytes, offset, ID_LENGTH);
+            return new ObjectId(buffer.getLong(), buffer.getLong(), buffer.getInt());
+        }
+
+        /**
+         * @throws IllegalArgumentException if it isn't 40 hex digits
+         */
+        static ObjectId parse(String hex) {
+            if (hex.length() != 2 * ID_LENGTH) throw new IllegalArgumentException("Invalid object id: " + hex);
+            return of(HEX.parseHex(hex), 0);
+        }
+
+        /**
+         * Compares unsigned like the sorted ids of a pack index
+         */
+        int compareTo(ByteBuffer buffer, int offset) {
+            int cmp = Long.compareUnsigned(high, buffer.getLong(offset));
+            if (cmp != 0) return cmp;
+            cmp = Long.compareUnsigned(middle, buffer.getLong(offset + Long.BYTES));
+            if (cmp != 0) return cmp;
+            return Integer.compareUnsigned(low, buffer.getInt(offset + 2 * Long.BYTES));
+        }
+
+        @Override
+        public String toString() {
+            return HEX.toHexDigits(high) + HEX.toHexDigits(middle) + HEX.toHexDigits(low);
+        }
+    }
+
+    record GitObject(int type, byte[] data) {
+    }
+
+    /**
+     * @param parent the first parent, null for a root commit
+     * @param time   the committer time in seconds
+     */
+    record Commit(ObjectId id, ObjectId tree, ObjectId parent, long time, String message) {
+    }
+
+    record TreeEntry(int mode, String name, ObjectId id) {
+        boolean isTree() {
+            return (mode & 0xF000) == 0x4000;
+        }
+
+        /**
+         * @return true for regular files, false for trees, symbolic links and submodules
+         */
+        boolean isFile() {
+            return (mode & 0xF000) == 0x8000;
+        }
+    }
+
+    private record BaseKey(Pack pack, long offset) {
+    }
+
+    private GitRepository(Path workTree, Path gitDir) throws IOException {
+        this.workTree = workTree;
+        this.gitDir = gitDir;
+        Path common = gitDir.resolve("commondir");
+        commonDir = Files.isRegularFile(common) ? gitDir.resolve(Files.readString(common).trim()).normalize() : gitDir;
+        Path config = commonDir.resolve("config");
+        if (Files.isRegularFile(config) && SHA256_FORMAT.matcher(Files.readString(config)).find()) {
+            throw new IOException("SHA-256 repositories are not supported");
+        }
+        addObjectDirectory(commonDir.resolve("objects"), 0);
+        try {
+            for (Path objects : objectDirectories) {
+                openPacks(objects.resolve("pack"));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * The directories of a work tree
+     *
+     * @param gitDir the .git directory or for linked work trees the directory the .git file points to
+     */
+    record Location(Path workTree, Path gitDir) {
+    }
+
+    /**
+     * @return the work tree that contains the given directory or null if it isn't inside one
+     */
+    static Location locate(Path directory) throws IOException {
+        for (Path dir = directory.toAbsolutePath(); dir != null; dir = dir.getParent()) {
+            Path dotGit = dir.resolve(".git");
+            if (Files.isDirectory(dotGit)) {
+                return new Location(dir, dotGit);
+            }
+            // Linked work trees and submodules have a file pointing to their git directory
+            if (Files.isRegularFile(dotGit)) {
+                String content = Files.readString(dotGit).trim();
+                if (content.startsWith("gitdir:")) {
+                    return new Location(dir, dir.resolve(content.substring(7).trim()).normalize());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the repository whose work tree contains the given directory or null if it isn't inside one
+     */
+    static GitRepository find(Path directory) throws IOException {
+        var location = locate(directory);
+        return location == null ? null : new GitRepository(location.workTree, location.gitDir);
+    }
+
+    private void addObjectDirectory(Path objects, int depth) throws IOException {
+        if (!Files.isDirectory(objects) || objectDirectories.contains(objects)) return;
+        objectDirectories.add(objects);
+        Path alternates = objects.resolve("info").resolve("alternates");
+        if (depth < MAX_REF_DEPTH && Files.isRegularFile(alternates)) {
+            for (String line : Files.readAllLines(alternates)) {
+                line = line.trim();
+                if (!line.isEmpty() && line.charAt(0) != '#') {
+                    addObjectDirectory(objects.resolve(line).normalize(), depth + 1);
+                }
+            }
+        }
+    }
+
+    private void openPacks(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.idx")) {
+            for (Path index : stream) {
+                String name = index.getFileName().toString();
+                Path pack = directory.resolve(name.substring(0, name.length() - 4) + ".pack");
+                if (Files.isRegularFile(pack)) {
+                    packs.add(new Pack(index, pack));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the commit HEAD points to or null if there is none yet, e.g. on a new branch
+     */
+    ObjectId resolveHead() throws IOException {
+        return resolveRef("HEAD", 0);
+    }
+
+    private ObjectId resolveRef(String name, int depth) throws IOException {
+        String value = readRef(name);
+        if (value == null) return null;
+        if (value.startsWith("ref:")) {
+            return depth < MAX_REF_DEPTH ? resolveRef(value.substring(4).trim(), depth + 1) : null;
+        }
+        try {
+            return ObjectId.parse(value);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid ref " + name, e);
+        }
+    }
+
+    private String readRef(String name) throws IOException {
+        // HEAD lives in the git directory of each work tree, the branches in the common directory
+        for (Path dir : List.of(gitDir, commonDir)) {
+            Path file = dir.resolve(name);
+            if (Files.isRegularFile(file)) return Files.readString(file).trim();
+        }
+        Path packedRefs = commonDir.resolve("packed-refs");
+        if (Files.isRegularFile(packedRefs)) {
+            for (String line : Files.readAllLines(packedRefs)) {
+                if (line.length() == 2 * ID_LENGTH + 1 + name.length() && line.charAt(2 * ID_LENGTH) == ' ' && line.endsWith(name)) {
+                    return line.substring(0, 2 * ID_LENGTH);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the object or null if it isn't in the repository, e.g. the parents of a shallow clone
+     */
+    GitObject read(ObjectId id) throws IOException {
+        for (Pack pack : packs) {
+            long offset = pack.find(id);
+            if (offset != -1) return pack.read(offset);
+        }
+        String hex = id.toString();
+        for (Path objects : objectDirectories) {
+            Path file = objects.resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+            if (Files.isRegularFile(file)) return readLoose(Files.readAllBytes(file));
+        }
+        return null;
+    }
+
+    /**
+     * @return the commit or null if it isn't in the repository
+     */
+    Commit readCommit(ObjectId id) throws IOException {
+        var object = read(id);
+        if (object == null) return null;
+        if (object.type != COMMIT) throw new IOException("Not a commit: " + id);
+        return parseCommit(id, object.data);
+    }
+
+    List<TreeEntry> readTree(ObjectId id) throws IOException {
+        var object = read(id);
+        if (object == null) throw new IOException("Missing tree " + id);
+        if (object.type != TREE) throw new IOException("Not a tree: " + id);
+        return parseTree(object.data);
+    }
+
+    static Commit parseCommit(ObjectId id, byte[] data) {
+        String text = new String(data, StandardCharsets.UTF_8);
+        ObjectId tree = null;
+        ObjectId parent = null;
+        long time = 0;
+        int position = 0;
+        while (position < text.length()) {
+            int end = text.indexOf('\n', position);
+            if (end == -1) end = text.length();
+            // An empty line ends the headers, the message follows
+            if (end == position) {
+                position++;
+                break;
+            }
+            String line = text.substring(position, end);
+            if (line.startsWith("tree ")) {
+                tree = ObjectId.parse(line.substring(5));
+            } else if (line.startsWith("parent ") && parent == null) {
+                parent = ObjectId.parse(line.substring(7));
+            } else if (line.startsWith("committer ")) {
+                // "committer <name> <<email>> <seconds> <zone>"
+                int zone = line.lastIndexOf(' ');
+                int seconds = line.lastIndexOf(' ', zone - 1);
+                try {
+                    time = Long.parseLong(line.substring(seconds + 1, zone));
+                } catch (NumberFormatException | StringIndexOutOfBoundsException ignored) {
+                }
+            }
+            position = end + 1;
+        }
+        return new Commit(id, tree, parent, time, position < text.length() ? text.substring(position) : "");
+    }
+
+    static List<TreeEntry> parseTree(byte[] data) throws IOException {
+        var entries = new ArrayList<TreeEntry>();
+        int position = 0;
+        while (position < data.length) {
+            // "<octal mode> <name>\0<20 byte id>"
+            int mode = 0;
+            while (position < data.length && data[position] != ' ') {
+                mode = (mode << 3) + data[position++] - '0';
+            }
+            int nameStart = ++position;
+            while (position < data.length && data[position] != 0) {
+                position++;
+            }
+            if (position + ID_LENGTH >= data.length) throw new IOException("Corrupt tree");
+            String name = new String(data, nameStart, position - nameStart, StandardCharsets.UTF_8);
+            entries.add(new TreeEntry(mode, name, ObjectId.of(data, position + 1)));
+            position += 1 + ID_LENGTH;
+        }
+        return entries;
+    }
+
+    private static GitObject readLoose(byte[] compressed) throws IOException {
+        // "<type> <size>\0<data>", loose objects are small enough to inflate in one go
+        byte[] raw;
+        try (var in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            raw = in.readAllBytes();
+        }
+        int nul = 0;
+        while (nul < raw.length && raw[nul] != 0) {
+            nul++;
+        }
+        String header = new String(raw, 0, nul, StandardCharsets.US_ASCII);
+        int type = switch (header.substring(0, Math.max(0, header.indexOf(' ')))) {
+            case "commit" -> COMMIT;
+            case "tree" -> TREE;
+            case "blob" -> BLOB;
+            case "tag" -> TAG;
+            default -> throw new IOException("Corrupt loose object");
+        };
+        byte[] data = new byte[raw.length - nul - 1];
+        System.arraycopy(raw, nul + 1, data, 0, data.length);
+        return new GitObject(type, data);
+    }
+
+    /**
+     * Rebuilds an object from its base and a git delta: the sizes of both followed by copy (from the base) and insert instructions
+     */
+    static byte[] applyDelta(byte[] base, byte[] delta) throws IOException {
+        try {
+            int position = 0;
+            long baseSize = 0;
+            int b;
+            int shift = 0;
+            do {
+                b = delta[position++] & 0xFF;
+                baseSize |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            long targetSize = 0;
+            shift = 0;
+            do {
+                b = delta[position++] & 0xFF;
+                targetSize |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (baseSize != base.length || targetSize > Integer.MAX_VALUE) throw new IOException("Corrupt delta");
+
+            byte[] target = new byte[(int) targetSize];
+            int out = 0;
+            while (position < delta.length) {
+                int command = delta[position++] & 0xFF;
+                if ((command & 0x80) != 0) {
+                    // The set bits tell which offset and size bytes follow
+                    long offset = 0;
+                    int size = 0;
+                    if ((command & 0x01) != 0) offset = delta[position++] & 0xFF;
+                    if ((command & 0x02) != 0) offset |= (delta[position++] & 0xFF) << 8;
+                    if ((command & 0x04) != 0) offset |= (delta[position++] & 0xFF) << 16;
+                    if ((command & 0x08) != 0) offset |= (long) (delta[position++] & 0xFF) << 24;
+                    if ((command & 0x10) != 0) size = delta[position++] & 0xFF;
+                    if ((command & 0x20) != 0) size |= (delta[position++] & 0xFF) << 8;
+                    if ((command & 0x40) != 0) size |= (delta[position++] & 0xFF) << 16;
+                    if (size == 0) size = 0x10000;
+                    System.arraycopy(base, (int) offset, target, out, size);
+                    out += size;
+                } else if (command != 0) {
+                    System.arraycopy(delta, position, target, out, command);
+                    position += command;
+                    out += command;
+                } else {
+                    throw new IOException("Corrupt delta");
+                }
+            }
+            if (out != target.length) throw new IOException("Corrupt delta");
+            return target;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt delta", e);
+        }
+    }
+
+    private GitObject cachedBase(Pack pack, long offset) {
+        synchronized (baseCache) {
+            return baseCache.get(new BaseKey(pack, offset));
+        }
+    }
+
+    /**
+     * Keeps recently used delta bases, a chain of deltas is mostly read in order from the same bases
+     */
+    private void cacheBase(Pack pack, long offset, GitObject object) {
+        if (object.data.length > BASE_CACHE_BYTES / 4) return;
+        synchronized (baseCache) {
+            if (baseCache.put(new BaseKey(pack, offset), object) == null) {
+                baseCacheBytes += object.data.length;
+            }
+            var iterator = baseCache.values().iterator();
+            while (baseCacheBytes > BASE_CACHE_BYTES && iterator.hasNext()) {
+                baseCacheBytes -= iterator.next().data.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Pack pack : packs) {
+            try {
+                pack.channel.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * A pack file with its version 2 index. The index is kept in memory, the pack is read on demand.
+     */
+    private final class Pack {
+        private static final int FANOUT = 8;
+        private static final int IDS = FANOUT + 256 * Integer.BYTES;
+        private final ByteBuffer index;
+        private final int count;
+        private final FileChannel channel;
+
+        Pack(Path indexFile, Path packFile) throws IOException {
+            index = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            if (index.limit() < IDS || index.getInt(0) != 0xFF744F63 || index.getInt(4) != 2) {
+                throw new IOException("Unsupported pack index " + indexFile);
+            }
+            count = index.getInt(FANOUT + 255 * Integer.BYTES);
+            channel = FileChannel.open(packFile, StandardOpenOption.READ);
+        }
+
+        /**
+         * @return the offset of the object in the pack or -1 if it isn't in this pack
+         */
+        long find(ObjectId id) {
+            // The fan out table holds how many ids start with a byte up to each value
+            int first = (int) (id.high >>> 56);
+            int low = first == 0 ? 0 : index.getInt(FANOUT + (first - 1) * Integer.BYTES);
+            int high = index.getInt(FANOUT + first * Integer.BYTES) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = id.compareTo(index, IDS + mid * ID_LENGTH);
+                if (cmp == 0) return offset(mid);
+                if (cmp < 0) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return -1;
+        }
+
+        private long offset(int entry) {
+            // Ids are followed by a CRC per entry, then 4 byte offsets. Offsets with the high bit set point into a table of 8 byte ones.
+            int offsets = IDS + count * (ID_LENGTH + Integer.BYTES);
+            int offset = index.getInt(offsets + entry * Integer.BYTES);
+            if (offset >= 0) return offset;
+            return index.getLong(offsets + count * Integer.BYTES + (offset & 0x7FFFFFFF) * Long.BYTES);
+        }
+
+        GitObject read(long offset) throws IOException {
+            var header = ByteBuffer.allocate(32);
+            readFully(header, offset);
+            header.flip();
+            // Type and inflated size, little endian base 128 with the type in the first byte
+            int b = header.get() & 0xFF;
+            int type = (b >> 4) & 7;
+            long size = b & 0x0F;
+            for (int shift = 4; (b & 0x80) != 0; shift += 7) {
+                b = header.get() & 0xFF;
+                size |= (long) (b & 0x7F) << shift;
+            }
+            if (size > Integer.MAX_VALUE - 8) throw new IOException("Object too large at " + offset);
+
+            GitObject base;
+            switch (type) {
+                case COMMIT, TREE, BLOB, TAG -> {
+                    return new GitObject(type, inflate(offset + header.position(), (int) size));
+                }
+                case OFS_DELTA -> {
+                    b = header.get() & 0xFF;
+                    long distance = b & 0x7F;
+                    while ((b & 0x80) != 0) {
+                        b = header.get() & 0xFF;
+                        distance = ((distance + 1) << 7) | (b & 0x7F);
+                    }
+                    base = readBase(offset - distance);
+                }
+                case REF_DELTA -> {
+                    byte[] id = new byte[ID_LENGTH];
+                    header.get(id);
+                    base = GitRepository.this.read(ObjectId.of(id, 0));
+                    if (base == null) throw new IOException("Missing delta base at " + offset);
+                }
+                default -> throw new IOException("Unknown pack object type " + type + " at " + offset);
+            }
+            byte[] delta = inflate(offset + header.position(), (int) size);
+            return new GitObject(base.type, applyDelta(base.data, delta));
+        }
+
+        private GitObject readBase(long offset) throws IOException {
+            var base = cachedBase(this, offset);
+            if (base == null) {
+                base = read(offset);
+                cacheBase(this, offset, base);
+            }
+            return base;
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read == -1) break;
+                position += read;
+            }
+        }
+
+        private byte[] inflate(long position, int size) throws IOException {
+            byte[] data = new byte[size];
+            // Compressed data is rarely larger than the inflated one
+            var input = ByteBuffer.allocate(Math.max(256, Math.min(size + 64, 64 << 10)));
+            var inflater = new Inflater();
+            try {
+                int done = 0;
+                while (done < size) {
+                    if (inflater.needsInput()) {
+                        input.clear();
+                        int read = channel.read(input, position);
+                        if (read == -1) throw new EOFException("Truncated pack object");
+                        position += read;
+                        input.flip();
+                        inflater.setInput(input);
+                    }
+                    int inflated = inflater.inflate(data, done, size - done);
+                    if (inflated == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                        throw new IOException("Corrupt pack object");
+                    }
+                    done += inflated;
+                }
+                return data;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt pack object", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
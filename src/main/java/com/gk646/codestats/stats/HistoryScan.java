@@ -0,0 +1,248 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import com.gk646.codestats.util.ParsingUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Counts the lines of past commits from the local git history, used to backfill the commit timeline. <br>
+ * Follows the first parents of HEAD and counts the project directory of each commit with the type and directory exclusions of a {@link ScanEngine}.
+ * Ignore files are not applied to the history.
+ * <p>
+ * Blobs and whole subtrees that didn't change between commits are counted only once, by their object id.
+ * The commits are counted in parallel on the pool of the {@link ParallelWalker}.
+ */
+public final class HistoryScan {
+    private static final int MESSAGE_LENGTH = 50;
+    private final ScanEngine engine;
+    private final BooleanSupplier cancelRequested;
+    private final ExclusionMatcher exclusions;
+    private final ContentCache blobs = new ContentCache(GitIndex.EMPTY);
+    private final Map<TreeKey, Counts> trees = new ConcurrentHashMap<>();
+    private volatile ScanProgress progress = new ScanProgress(0, null);
+
+    /**
+     * @param timestamp the commit time in milliseconds
+     * @param message   the first line of the commit message, up to 50 characters
+     */
+    public record CommitStats(String id, long timestamp, String message, long codeLines, long totalLines) {
+    }
+
+    private record Counts(long codeLines, long totalLines) {
+        static final Counts ZERO = new Counts(0, 0);
+    }
+
+    /**
+     * @param path the relative path if exclusions apply inside the tree, null if it counts the same anywhere
+     */
+    private record TreeKey(GitRepository.ObjectId id, String path) {
+    }
+
+    /**
+     * @param cancelRequested polled by the workers, may be null
+     */
+    public HistoryScan(ScanEngine engine, BooleanSupplier cancelRequested) {
+        this.engine = engine;
+        this.cancelRequested = cancelRequested;
+        exclusions = engine.exclusions;
+    }
+
+    /**
+     * @return the progress in counted commits
+     */
+    public ScanProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Counts the newest commits of the current branch
+     *
+     * @param listener called on the calling thread every {@link ParallelWalker#SNAPSHOT_INTERVAL_MS} while counting, may be null
+     * @return the stats per commit, oldest first, or null if the root of the engine isn't inside a git repository
+     * @throws CancellationException if cancelled
+     */
+    public List<CommitStats> scan(int maxCommits, Runnable listener) throws IOException {
+        try (var repository = GitRepository.find(engine.root)) {
+            if (repository == null) return null;
+            List<String> prefix = new ArrayList<>();
+            for (Path segment : repository.workTree.relativize(engine.root.toAbsolutePath())) {
+                if (!segment.toString().isEmpty()) prefix.add(segment.toString());
+            }
+
+            var commits = new ArrayList<GitRepository.Commit>();
+            var id = repository.resolveHead();
+            while (id != null && commits.size() < maxCommits) {
+                var commit = repository.readCommit(id);
+                // Parents of a shallow clone are missing
+                if (commit == null) break;
+                commits.add(commit);
+                id = commit.parent();
+            }
+            progress = new ScanProgress(commits.size(), cancelRequested);
+            if (commits.isEmpty()) return List.of();
+
+            var task = ParallelWalker.POOL.submit(() -> {
+                var tasks = new ArrayList<ForkJoinTask<CommitStats>>(commits.size());
+                for (var commit : commits) {
+                    tasks.add(ForkJoinTask.adapt(() -> count(repository, commit, prefix)));
+                }
+                ForkJoinTask.invokeAll(tasks);
+                var stats = new ArrayList<CommitStats>(tasks.size());
+                for (var commitTask : tasks) {
+                    stats.add(commitTask.join());
+                }
+                return stats;
+            });
+            while (true) {
+                try {
+                    var stats = task.get(ParallelWalker.SNAPSHOT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    Collections.reverse(stats);
+                    return stats;
+                } catch (TimeoutException e) {
+                    if (listener != null) listener.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    progress.cancel();
+                    throw new CancellationException();
+                } catch (ExecutionException e) {
+                    throw rethrow(e.getCause());
+                }
+            }
+        }
+    }
+
+    /**
+     * Unwraps what the adapted tasks wrapped
+     */
+    private static IOException rethrow(Throwable cause) {
+        while (cause instanceof RuntimeException && !(cause instanceof CancellationException) && cause.getCause() != null) {
+            if (cause instanceof UncheckedIOException unchecked) return unchecked.getCause();
+            cause = cause.getCause();
+        }
+        if (cause instanceof IOException e) return e;
+        if (cause instanceof RuntimeException e) throw e;
+        if (cause instanceof Error e) throw e;
+        return new IOException(cause);
+    }
+
+    private CommitStats count(GitRepository repository, GitRepository.Commit commit, List<String> prefix) throws IOException {
+        progress.checkCancelled();
+        var counts = Counts.ZERO;
+        var tree = commit.tree();
+        // Descend to the project directory, commits without it count as empty
+        for (String name : prefix) {
+            GitRepository.ObjectId child = null;
+            for (var entry : repository.readTree(tree)) {
+                if (entry.isTree() && entry.name().equals(name)) child = entry.id();
+            }
+            tree = child;
+            if (tree == null) break;
+        }
+        if (tree != null && !engine.isExcludedDirectory(engine.root)) {
+            String relativePath = exclusions.hasRegexes() ? exclusions.relativize(engine.root) : "";
+            counts = countTree(repository, tree, relativePath, exclusions.locate(engine.root));
+        }
+        progress.fileParsed();
+
+        String message = commit.message().strip();
+        int lineEnd = message.indexOf('\n');
+        if (lineEnd != -1) message = message.substring(0, lineEnd).strip();
+        if (message.length() > MESSAGE_LENGTH) message = message.substring(0, MESSAGE_LENGTH).strip();
+        return new CommitStats(commit.id().toString(), commit.time() * 1000, message, counts.codeLines, counts.totalLines);
+    }
+
+    /**
+     * Applies the exclusions like {@link ParallelWalker} does for a directory on disk
+     *
+     * @param node the trie node of the directory, see {@link ExclusionMatcher#locate(Path)}
+     */
+    private Counts countTree(GitRepository repository, GitRepository.ObjectId id, String relativePath, ExclusionMatcher.Node node) throws IOException {
+        boolean hasRegexes = exclusions.hasRegexes();
+        // Without excluded directories or regexes below it, a subtree counts the same wherever it is
+        var key = new TreeKey(id, node == null && !hasRegexes ? null : relativePath);
+        var cached = trees.get(key);
+        if (cached != null) return cached;
+        progress.checkCancelled();
+
+        long codeLines = 0;
+        long totalLines = 0;
+        for (var entry : repository.readTree(id)) {
+            String name = entry.name();
+            Counts counts;
+            if (entry.isTree()) {
+                var child = node == null ? null : node.child(name);
+                if (child != null && child.isExcluded()) continue;
+                String childPath = hasRegexes ? ExclusionMatcher.child(relativePath, name) : "";
+                if (hasRegexes && exclusions.isExcludedDirectory(childPath, IgnoreRules.NONE)) continue;
+                counts = countTree(repository, entry.id(), childPath, child);
+            } else if (entry.isFile()) {
+                if (hasRegexes && exclusions.isExcludedFile(relativePath, name, IgnoreRules.NONE)) continue;
+                String extension = ParsingUtil.getFileExtension(name);
+                if (!engine.isCountedType(extension)) continue;
+                counts = countBlob(repository, entry.id(), extension);
+            } else {
+                // Symbolic links and submodules
+                continue;
+            }
+            codeLines += counts.codeLines;
+            totalLines += counts.totalLines;
+        }
+        var counts = new Counts(codeLines, totalLines);
+        trees.putIfAbsent(key, counts);
+        return counts;
+    }
+
+    /**
+     * Counts a blob like {@link ScanEngine} counts a file: binary files have no lines, files with a separate tab are classified
+     */
+    private Counts countBlob(GitRepository repository, GitRepository.ObjectId id, String extension) throws IOException {
+        var record = blobs.get(id, extension);
+        if (record == null) {
+            var blob = repository.read(id);
+            if (blob == null || blob.type() != GitRepository.BLOB) throw new IOException("Missing blob " + id);
+            byte[] data = blob.data();
+            record = BinarySniffer.isBinary(data, Math.min(data.length, BinarySniffer.SNIFF_SIZE))
+                    ? new FileRecord(extension, data.length, 0, 0)
+                    : engine.countContent(data, extension, data.length, 0, progress);
+            blobs.put(id, extension, record);
+        }
+        return new Counts(record.hasTabStats ? record.sourceCodeLines : 0, record.totalLines);
+    }
+}
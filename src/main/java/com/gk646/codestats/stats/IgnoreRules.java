@@ -0,0 +1,309 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The rules of the .gitignore and .ignore files from the walk root down to one directory. <br>
+ * Every ignore file adds one immutable level on top of its parent's rules, so a directory without own files just passes its parent's instance on.
+ * Paths are matched relative to the project root, each level looks at the part below its own directory.
+ * Like git, the last matching rule of the deepest level decides and .ignore files take precedence over .gitignore files.
+ * Negated rules can't bring back files below an ignored directory, as those are never visited.
+ */
+public final class IgnoreRules {
+    public static final IgnoreRules NONE = new IgnoreRules(null, 0, null);
+    private static final String[] FILE_NAMES = {".gitignore", ".ignore"};
+    /**
+     * Compiled rules per ignore file, kept across updates until the file changes
+     */
+    private static final ConcurrentHashMap<Path, CachedFile> CACHE = new ConcurrentHashMap<>();
+    private final IgnoreRules parent;
+    private final int prefixLength;
+    private final Level level;
+
+    private record Rule(String regex, boolean isNegated, boolean isDirectoryOnly) {
+    }
+
+    /**
+     * @param level null if the file has no rules
+     */
+    private record CachedFile(long size, long lastModified, Level level) {
+    }
+
+    /**
+     * The compiled rules of one ignore file, independent of where it is in the tree. Each thread gets its own matchers when it first needs them.
+     */
+    private static final class Level {
+        private final boolean[] fileNegated;
+        private final boolean[] directoryNegated;
+        private final ThreadLocal<Matcher> fileMatcher;
+        private final ThreadLocal<Matcher> directoryMatcher;
+
+        Level(Pattern filePattern, Pattern directoryPattern, boolean[] fileNegated, boolean[] directoryNegated) {
+            this.fileNegated = fileNegated;
+            this.directoryNegated = directoryNegated;
+            this.fileMatcher = filePattern == null ? null : ThreadLocal.withInitial(() -> filePattern.matcher(""));
+            this.directoryMatcher = ThreadLocal.withInitial(() -> directoryPattern.matcher(""));
+        }
+    }
+
+    private IgnoreRules(IgnoreRules parent, int prefixLength, Level level) {
+        this.parent = parent;
+        this.prefixLength = prefixLength;
+        this.level = level;
+    }
+
+    /**
+     * @return the order in which the ignore files of a directory have to be added, -1 for other files
+     */
+    public static int precedence(String fileName) {
+        for (int i = 0; i < FILE_NAMES.length; i++) {
+            if (FILE_NAMES[i].equals(fileName)) return i;
+        }
+        return -1;
+    }
+
+    public static int fileCount() {
+        return FILE_NAMES.length;
+    }
+
+    /**
+     * Drops all parsed files, called when the settings change
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * Reads the rules of all directories from the project root down to the given one. Used for the walk root and single paths.
+     *
+     * @param projectPath the paths are matched relative to this, directories outside it only get their own rules
+     */
+    public static IgnoreRules forDirectory(Path projectPath, Path directory) {
+        Path dir = directory.startsWith(projectPath) ? projectPath : directory;
+        var rules = NONE;
+        for (int depth = dir.getNameCount(); ; depth++) {
+            String relativePath = relativize(projectPath, dir);
+            for (String name : FILE_NAMES) {
+                Path file = dir.resolve(name);
+                try {
+                    rules = rules.withFile(file, Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS), relativePath);
+                } catch (IOException ignored) {
+                    // No ignore file
+                }
+            }
+            if (depth >= directory.getNameCount()) return rules;
+            dir = dir.resolve(directory.getName(depth).toString());
+        }
+    }
+
+    private static String relativize(Path projectPath, Path path) {
+        return projectPath.relativize(path).toString().replace('\\', '/');
+    }
+
+    /**
+     * Adds the rules of an ignore file, parsed and compiled only once while it doesn't change.
+     *
+     * @param directoryPath the relative path of the file's directory
+     * @return the combined rules or this instance if the file is unreadable or empty
+     */
+    public IgnoreRules withFile(Path file, BasicFileAttributes attrs, String directoryPath) {
+        if (!attrs.isRegularFile()) return this;
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        var cached = CACHE.get(file);
+        if (cached == null || cached.size != attrs.size() || cached.lastModified != lastModified) {
+            try {
+                cached = new CachedFile(attrs.size(), lastModified, compile(parse(Files.readAllLines(file, StandardCharsets.UTF_8))));
+            } catch (IOException | RuntimeException e) {
+                return this; // Unreadable or not UTF-8
+            }
+            CACHE.put(file, cached);
+        }
+        if (cached.level == null) return this;
+        return new IgnoreRules(this, directoryPath.isEmpty() ? 0 : directoryPath.length() + 1, cached.level);
+    }
+
+    /**
+     * @return the rules as one alternation for files and one for directories or null if there are none
+     */
+    private static Level compile(List<Rule> rules) {
+        if (rules.isEmpty()) return null;
+
+        // Alternatives are tried in order, so reversing them makes the first matching group the last matching rule
+        var files = new StringBuilder();
+        var directories = new StringBuilder();
+        var fileNegated = new boolean[rules.size()];
+        var directoryNegated = new boolean[rules.size()];
+        int fileRules = 0;
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            var rule = rules.get(i);
+            if (!directories.isEmpty()) directories.append('|');
+            directories.append('(').append(rule.regex).append(')');
+            directoryNegated[rules.size() - 1 - i] = rule.isNegated;
+            if (!rule.isDirectoryOnly) {
+                if (!files.isEmpty()) files.append('|');
+                files.append('(').append(rule.regex).append(')');
+                fileNegated[fileRules++] = rule.isNegated;
+            }
+        }
+        return new Level(files.isEmpty() ? null : Pattern.compile(files.toString()), Pattern.compile(directories.toString()),
+                Arrays.copyOf(fileNegated, fileRules), directoryNegated);
+    }
+
+    /**
+     * @param relativePath path relative to the project root with '/' as separator, only read during the call
+     */
+    public boolean isIgnored(CharSequence relativePath, boolean isDirectory) {
+        for (var rules = this; rules.parent != null; rules = rules.parent) {
+            var level = rules.level;
+            var matcher = isDirectory ? level.directoryMatcher : level.fileMatcher;
+            if (matcher == null || rules.prefixLength > relativePath.length()) continue;
+            var m = matcher.get().reset(relativePath).region(rules.prefixLength, relativePath.length());
+            if (m.matches()) {
+                var negated = isDirectory ? level.directoryNegated : level.fileNegated;
+                for (int group = 1; group <= negated.length; group++) {
+                    if (m.start(group) != -1) return !negated[group - 1];
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<Rule> parse(List<String> lines) {
+        var rules = new ArrayList<Rule>();
+        for (String line : lines) {
+            var rule = parseLine(line);
+            if (rule != null) rules.add(rule);
+        }
+        return rules;
+    }
+
+    private static Rule parseLine(String line) {
+        int end = line.length();
+        // Trailing spaces are ignored unless escaped
+        while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) {
+            end--;
+        }
+        if (end == 0 || line.charAt(0) == '#') return null;
+
+        int start = 0;
+        boolean isNegated = line.charAt(0) == '!';
+        if (isNegated) start++;
+        boolean isDirectoryOnly = line.charAt(end - 1) == '/';
+        if (isDirectoryOnly) end--;
+        // A slash at the start or in the middle anchors the pattern to the directory of the file
+        boolean isAnchored = line.lastIndexOf('/', end - 1) >= start;
+        if (start < end && line.charAt(start) == '/') start++;
+        if (start >= end) return null;
+
+        var regex = new StringBuilder();
+        if (!isAnchored) regex.append("(?:.*/)?");
+        appendGlob(regex, line, start, end);
+        return new Rule(regex.toString(), isNegated, isDirectoryOnly);
+    }
+
+    private static void appendGlob(StringBuilder regex, String glob, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> {
+                    if (i + 1 < end && glob.charAt(i + 1) == '*'
+                            && (i == start || glob.charAt(i - 1) == '/')
+                            && (i + 2 == end || glob.charAt(i + 2) == '/')) {
+                        if (i + 2 == end) {
+                            regex.append(".*"); // Everything inside
+                        } else {
+                            regex.append("(?:.*/)?"); // Zero or more directories
+                            i++;
+                        }
+                        i++;
+                    } else {
+                        while (i + 1 < end && glob.charAt(i + 1) == '*') i++;
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '[' -> i = appendClass(regex, glob, i, end);
+                case '\\' -> {
+                    if (i + 1 < end) i++;
+                    appendLiteral(regex, glob.charAt(i));
+                }
+                default -> appendLiteral(regex, c);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the closing bracket, or the opening one if it's a literal
+     */
+    private static int appendClass(StringBuilder regex, String glob, int open, int end) {
+        int i = open + 1;
+        if (i < end && (glob.charAt(i) == '!' || glob.charAt(i) == '^')) i++;
+        if (i < end && glob.charAt(i) == ']') i++; // A leading bracket is part of the set
+        while (i < end && glob.charAt(i) != ']') i++;
+        if (i >= end) {
+            appendLiteral(regex, '[');
+            return open;
+        }
+
+        regex.append('[');
+        int first = open + 1;
+        if (glob.charAt(first) == '!' || glob.charAt(first) == '^') {
+            regex.append('^');
+            first++;
+        }
+        for (int j = first; j < i; j++) {
+            char c = glob.charAt(j);
+            if (c == '-' && j > first && j + 1 < i) {
+                regex.append('-'); // Range
+                continue;
+            }
+            if (c == '\\' && j + 1 < i) c = glob.charAt(++j);
+            if (!Character.isLetterOrDigit(c)) regex.append('\\');
+            regex.append(c);
+        }
+        regex.append(']');
+        return i;
+    }
+
+    private static void appendLiteral(StringBuilder regex, char c) {
+        if ("\\.[]{}()<>*+-=!?^$|".indexOf(c) != -1) {
+            regex.append('\\');
+        }
+        regex.append(c);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Updates a previous {@link ScanResult} with a set of changed paths instead of walking the whole project again. <br>
+ * Only the changed files (or created directories) are read. The totals are then rebuilt from the rows of the previous {@link FileTable},
+ * as min and max values can't be taken back out of an {@link OverViewEntry}.
+ */
+final class IncrementalScan {
+
+    private IncrementalScan() {
+        //Utility class
+    }
+
+    /**
+     * @param previous is not modified
+     * @param changed  created, modified, deleted or moved paths - files or directories
+     */
+    static ScanResult apply(ScanEngine engine, ScanResult previous, Set<Path> changed) {
+        var files = previous.files;
+        var removed = new BitSet(files.size());
+        var rescanned = new ScanResult();
+        var unknown = new HashSet<Path>();
+
+        for (Path path : changed) {
+            int row = files.find(path);
+            if (row == -1) {
+                unknown.add(path); // Either new or a directory
+            } else {
+                removed.set(row);
+            }
+
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                continue; // Deleted
+            }
+            if (attrs.isDirectory()) {
+                if (!engine.isExcludedPath(path)) {
+                    rescanned.merge(ParallelWalker.walk(engine, path));
+                }
+            } else if (!engine.isExcludedPath(path.getParent())) {
+                engine.visitFile(path, FileInfo.resolveLink(path, attrs), rescanned);
+            }
+        }
+
+        // Drop everything below deleted or moved directories with a single pass, each directory is only checked once
+        if (!unknown.isEmpty()) {
+            var isBelowUnknown = new BitSet(files.directoryCount());
+            for (int id = 0; id < files.directoryCount(); id++) {
+                for (Path parent = Path.of(files.getDirectory(id)); parent != null; parent = parent.getParent()) {
+                    if (unknown.contains(parent)) {
+                        isBelowUnknown.set(id);
+                        break;
+                    }
+                }
+            }
+            for (int row = 0; row < files.size(); row++) {
+                if (isBelowUnknown.get(files.getDirectoryId(row))) removed.set(row);
+            }
+        }
+
+        var result = ScanResult.of(previous, removed).merge(rescanned);
+        result.sortEntries();
+        return result;
+    }
+}
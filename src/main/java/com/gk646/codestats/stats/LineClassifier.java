@@ -0,0 +1,222 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Classifies the lines of a file into blank, comment, documentation and misc lines by the {@link CommentGrammar} of its
+ * extension, without creating a String per line. <br>
+ * Works as a state machine directly on the decoded chars: per line only the first few non-whitespace chars are kept,
+ * and the closing delimiters are only searched in lines that are inside or may open a block comment.
+ * <ul>
+ *     <li>Lines end at '\n', '\r' or "\r\n" and a last line without terminator counts if it's not empty</li>
+ *     <li>Whitespace is every char up to ' ', like {@link String#trim()}</li>
+ *     <li>A line counts by how it starts, blank lines inside block comments count as blank</li>
+ * </ul>
+ */
+final class LineClassifier {
+    private static final int BUFFER_SIZE = 8192;
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[BUFFER_SIZE]);
+
+    int totalLines;
+    int commentLines;
+    int docLines;
+    int blankLines;
+    /**
+     * Misc lines are deducted from source code lines as well but not shown
+     */
+    int miscLines;
+
+    private final CommentGrammar grammar;
+    private final char[] prefix;
+    private final char[] tail;
+    private final int[] closeEnd;
+    private int prefixLength;
+    private boolean isLineStarted;
+    private boolean isSkipLF;
+    private boolean isTracking;
+    private int column;
+    /**
+     * The block comment the next line starts in. It's the only state carried from one line to the next.
+     */
+    private CommentGrammar.Marker openBlock;
+
+    LineClassifier(CommentGrammar grammar) {
+        this.grammar = grammar;
+        prefix = new char[Math.max(1, grammar.prefixLength)];
+        tail = new char[grammar.closeLength];
+        closeEnd = new int[grammar.closeMarkers.length];
+    }
+
+    /**
+     * @return a new classifier with the same grammar for a part of the file that starts in the given block comment, may be null
+     */
+    LineClassifier startingIn(CommentGrammar.Marker openBlock) {
+        var classifier = new LineClassifier(grammar);
+        classifier.openBlock = openBlock;
+        return classifier;
+    }
+
+    /**
+     * @return the block comment the next line would start in, null if none
+     */
+    CommentGrammar.Marker openBlock() {
+        return openBlock;
+    }
+
+    /**
+     * Adds the counts of a classifier of a following part of the file
+     */
+    void add(LineClassifier part) {
+        totalLines += part.totalLines;
+        commentLines += part.commentLines;
+        docLines += part.docLines;
+        blankLines += part.blankLines;
+        miscLines += part.miscLines;
+        openBlock = part.openBlock;
+    }
+
+    /**
+     * Reads and classifies all lines. If the reader throws, the lines completed before stay counted.
+     *
+     * @throws java.util.concurrent.CancellationException if the update is cancelled, checked between chunks
+     */
+    void classify(Reader reader, ScanProgress progress) throws IOException {
+        var buffer = BUFFER.get();
+        int read;
+        while ((read = reader.read(buffer, 0, BUFFER_SIZE)) != -1) {
+            progress.checkCancelled();
+            accept(buffer, read);
+        }
+        if (isLineStarted) {
+            endLine();
+        }
+    }
+
+    private void accept(char[] buffer, int length) {
+        int i = 0;
+        while (i < length) {
+            char c = buffer[i];
+            if (isSkipLF) {
+                isSkipLF = false;
+                if (c == '\n') {
+                    i++;
+                    continue;
+                }
+            }
+            if (c == '\n' || c == '\r') {
+                endLine();
+                isSkipLF = c == '\r';
+                i++;
+                continue;
+            }
+            isLineStarted = true;
+
+            if (prefixLength == 0) {
+                if (c <= ' ') {
+                    i++;
+                    continue;
+                }
+                isTracking = openBlock != null || grammar.opensBlock(c);
+            }
+            if (prefixLength < prefix.length) {
+                prefix[prefixLength++] = c;
+            } else if (!isTracking) {
+                // Nothing left to look at in this line, skip to its end
+                while (i < length && buffer[i] != '\n' && buffer[i] != '\r') {
+                    i++;
+                }
+                continue;
+            }
+            if (isTracking) {
+                track(c);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Remembers where the closing delimiters last ended in the current line
+     */
+    private void track(char c) {
+        int last = tail.length - 1;
+        for (int i = 0; i < last; i++) {
+            tail[i] = tail[i + 1];
+        }
+        tail[last] = c;
+        column++;
+        if (!grammar.endsClose(c)) return;
+        var closeMarkers = grammar.closeMarkers;
+        for (int i = 0; i < closeMarkers.length; i++) {
+            var close = closeMarkers[i];
+            int length = close.length();
+            if (column < length) continue;
+            int offset = tail.length - length;
+            int j = 0;
+            while (j < length && tail[offset + j] == close.charAt(j)) j++;
+            if (j == length) closeEnd[i] = column;
+        }
+    }
+
+    private void endLine() {
+        if (prefixLength == 0) {
+            blankLines++;
+        } else if (openBlock != null) {
+            if (openBlock.kind == CommentGrammar.BLOCK_DOC) {
+                docLines++;
+            } else {
+                commentLines++;
+            }
+            if (closeEnd[openBlock.closeIndex] > 0) {
+                openBlock = null;
+            }
+        } else {
+            var marker = grammar.match(prefix, prefixLength, closeEnd);
+            if (marker != null) {
+                switch (marker.kind) {
+                    case CommentGrammar.LINE_COMMENT, CommentGrammar.BLOCK_COMMENT -> commentLines++;
+                    case CommentGrammar.LINE_DOC, CommentGrammar.BLOCK_DOC -> docLines++;
+                    default -> miscLines++;
+                }
+                if (marker.isBlock() && closeEnd[marker.closeIndex] < marker.open.length() + marker.close.length()) {
+                    openBlock = marker;
+                }
+            }
+        }
+        totalLines++;
+
+        if (isTracking) {
+            Arrays.fill(closeEnd, 0);
+            Arrays.fill(tail, '\0');
+            column = 0;
+            isTracking = false;
+        }
+        prefixLength = 0;
+        isLineStarted = false;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interned file names of a {@link ScanResult}, shared by its {@link FileTable} and all its {@link StatTable}s. <br>
+ * All names are kept UTF-8 encoded in one byte array and looked up with an open addressing hash table of ids,
+ * so a name costs its bytes and a few ints instead of a String and map entry. Strings are only created when a name is shown.
+ */
+final class NameTable {
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+    private byte[] bytes = new byte[1024];
+    private int byteCount;
+    /**
+     * Name i spans bytes[offsets[i]] to bytes[offsets[i + 1]]
+     */
+    private int[] offsets = new int[65];
+    private int[] hashes = new int[64];
+    private int size;
+    /**
+     * Id + 1 of the name in each slot, 0 for a free one
+     */
+    private int[] slots = new int[128];
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the id of the name, equal names get the same id
+     */
+    int intern(String name) {
+        // Encoded right behind the last name, the bytes are only kept if the name is new
+        ensureCapacity(name.length() * 3);
+        int length = encode(name, bytes, byteCount) - byteCount;
+        return intern(bytes, byteCount, length, hash(bytes, byteCount, length));
+    }
+
+    /**
+     * Only reads the table, so a table that is no longer written to can be looked up from many threads.
+     * The name is encoded into a scratch array of the calling thread instead of behind the last name.
+     *
+     * @return the id of the name or -1 if it wasn't interned
+     */
+    int find(String name) {
+        var scratch = SCRATCH.get();
+        if (scratch.length < name.length() * 3) {
+            scratch = new byte[Math.max(scratch.length * 2, name.length() * 3)];
+            SCRATCH.set(scratch);
+        }
+        int length = encode(name, scratch, 0);
+        return slots[slotOf(scratch, 0, length, hash(scratch, 0, length))] - 1;
+    }
+
+    /**
+     * Interns all names of another table
+     *
+     * @return the id in this table for each id of the other
+     */
+    int[] internAll(NameTable other) {
+        var ids = new int[other.size];
+        for (int i = 0; i < other.size; i++) {
+            int from = other.offsets[i];
+            int length = other.offsets[i + 1] - from;
+            ensureCapacity(length);
+            ids[i] = intern(other.bytes, from, length, other.hashes[i]);
+        }
+        return ids;
+    }
+
+    String get(int id) {
+        return new String(bytes, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares two names by code points, which is the same as {@link String#compareTo(String)} outside of surrogate pairs
+     */
+    int compare(int idA, int idB) {
+        return Arrays.compareUnsigned(bytes, offsets[idA], offsets[idA + 1], bytes, offsets[idB], offsets[idB + 1]);
+    }
+
+    private int intern(byte[] source, int from, int length, int hash) {
+        int slot = slotOf(source, from, length, hash);
+        if (slots[slot] != 0) return slots[slot] - 1;
+        if (source != bytes || from != byteCount) {
+            System.arraycopy(source, from, bytes, byteCount, length);
+        }
+        return add(slot, length, hash);
+    }
+
+    /**
+     * @return the slot of the name or the free slot it belongs in
+     */
+    private int slotOf(byte[] source, int from, int length, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id == -1 || hashes[id] == hash && Arrays.equals(bytes, offsets[id], offsets[id + 1], source, from, from + length)) return slot;
+        }
+    }
+
+    private int add(int slot, int length, int hash) {
+        int id = size++;
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2 + 1);
+        }
+        hashes[id] = hash;
+        byteCount += length;
+        offsets[id + 1] = byteCount;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) rehash();
+        return id;
+    }
+
+    private void ensureCapacity(int length) {
+        if (byteCount + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, byteCount + length));
+        }
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Writes the name as UTF-8 without an intermediate array
+     *
+     * @return the index after the last written byte
+     */
+    private static int encode(String name, byte[] target, int index) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 0x80) {
+                target[index++] = (byte) c;
+            } else if (c < 0x800) {
+                target[index++] = (byte) (0xC0 | c >> 6);
+                target[index++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < name.length() && Character.isLowSurrogate(name.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, name.charAt(++i));
+                target[index++] = (byte) (0xF0 | codePoint >> 18);
+                target[index++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                target[index++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                target[index++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                target[index++] = (byte) (0xE0 | c >> 12);
+                target[index++] = (byte) (0x80 | c >> 6 & 0x3F);
+                target[index++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return index;
+    }
+
+    private static int hash(byte[] source, int from, int length) {
+        int hash = 1;
+        for (int i = from; i < from + length; i++) {
+            hash = 31 * hash + source[i];
+        }
+        return hash;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
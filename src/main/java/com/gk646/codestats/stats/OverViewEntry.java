@@ -65,5 +65,22 @@ public final class OverViewEntry {
         linesCode += sourceCodeLines;
     }
 
+    /**
+     * Combines the values of another entry into this one. The operation is associative and commutative,
+     * so partial entries of different workers or subtrees can be merged in any grouping. A new entry is the identity.
+     *
+     * @param other the entry to add, is not modified
+     */
+    public void merge(OverViewEntry other) {
+        count += other.count;
 
+        sizeSum += other.sizeSum;
+        sizeMin = Math.min(sizeMin, other.sizeMin);
+        sizeMax = Math.max(sizeMax, other.sizeMax);
+
+        lines += other.lines;
+        linesMin = Math.min(linesMin, other.linesMin);
+        linesMax = Math.max(linesMax, other.linesMax);
+        linesCode += other.linesCode;
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import com.gk646.codestats.ui.TypedTableModel;
+
+import java.util.Map;
+
+/**
+ * Table model of the OverView tab with the raw values of each {@link OverViewEntry}: the count as int and sizes as long kilobytes. <br>
+ * The "x" and "kb" presentation is done by the renderer, so sorting compares numbers and isn't affected by the locale.
+ */
+public final class OverViewTableModel extends TypedTableModel {
+    public static final int EXTENSION = 0;
+    public static final int COUNT = 1;
+    public static final int SIZE_SUM = 2;
+    public static final int SIZE_AVG = 5;
+    static final String[] COLUMN_NAMES = {"Extension", "Count", "Size SUM", "Size MIN", "Size MAX", "Size AVG", "Lines", "Lines MIN", "Lines MAX", "Lines AVG", "Lines CODE"};
+    private final String[] extensions;
+    private final OverViewEntry[] entries;
+
+    /**
+     * @param overView the map is copied, the entries are not and must not change while shown
+     */
+    OverViewTableModel(Map<String, OverViewEntry> overView) {
+        extensions = new String[overView.size()];
+        entries = new OverViewEntry[overView.size()];
+        int i = 0;
+        for (var pair : overView.entrySet()) {
+            extensions[i] = pair.getKey();
+            entries[i++] = pair.getValue();
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return entries.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (columnIndex == EXTENSION) return extensions[rowIndex];
+        if (columnIndex == COUNT) return entries[rowIndex].count;
+        return getLong(entries[rowIndex], columnIndex);
+    }
+
+    @Override
+    public int compare(int rowA, int rowB, int column) {
+        if (column == EXTENSION) return extensions[rowA].compareTo(extensions[rowB]);
+        return Long.compare(getLong(entries[rowA], column), getLong(entries[rowB], column));
+    }
+
+    /**
+     * Sizes are in kilobytes and averages are rounded down, like the footer
+     */
+    private static long getLong(OverViewEntry entry, int column) {
+        return switch (column) {
+            case COUNT -> entry.count;
+            case SIZE_SUM -> entry.sizeSum / 1000;
+            case 3 -> entry.sizeMin / 1000;
+            case 4 -> entry.sizeMax / 1000;
+            case SIZE_AVG -> entry.sizeSum / entry.count / 1000;
+            case 6 -> entry.lines;
+            case 7 -> entry.linesMin;
+            case 8 -> entry.linesMax;
+            case 9 -> entry.lines / entry.count;
+            case 10 -> entry.linesCode;
+            default -> throw new IndexOutOfBoundsException("Invalid column: " + column);
+        };
+    }
+}
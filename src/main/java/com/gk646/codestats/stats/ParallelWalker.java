@@ -0,0 +1,508 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import com.gk646.codestats.util.LineCounter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Walks a directory tree on a work-stealing {@link ForkJoinPool} instead of a single {@link java.nio.file.FileVisitor}.
+ * Every directory becomes its own task, so whole subtrees can be stolen and parsed by idle workers. <br>
+ * Exclusion rules are the same as before. Each task carries its node in the {@link ExclusionMatcher} trie and its relative path,
+ * so entries are matched segment by segment as the walk descends.
+ * The ignore files of a directory are read before any of its entries is visited and passed on to its subdirectories.
+ * <p>
+ * The files of a directory are parsed largest first in batches of about {@link #BATCH_BYTES}, each batch is its own task.
+ * Files above {@link #SPLIT_THRESHOLD} are a batch of their own and split into ranges counted or classified in parallel,
+ * so a single huge file doesn't become the tail of the whole scan.
+ */
+final class ParallelWalker {
+    static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    static final long SNAPSHOT_INTERVAL_MS = 250;
+    static final long BATCH_BYTES = 8L << 20;
+    private static final int BATCH_FILES = 512;
+    static final long SPLIT_THRESHOLD = 64L << 20;
+    private static final long RANGE_SIZE = 16L << 20;
+
+    private ParallelWalker() {
+        //Utility class
+    }
+
+    /**
+     * @return the merged result of all workers, sorted with {@link ScanResult#sortEntries()}
+     */
+    static ScanResult walk(ScanEngine engine, Path root) {
+        return walk(engine, root, null);
+    }
+
+    /**
+     * Same as {@link #walk(ScanEngine, Path)}, but reports the partial result while the walk is running.
+     *
+     * @param listener called on the calling thread every {@link #SNAPSHOT_INTERVAL_MS} with the partial total.
+     *                 It's updated in place afterward, so anything needed later has to be copied. May be null.
+     * @throws java.util.concurrent.CancellationException if the engine's {@link ScanProgress} was cancelled
+     */
+    static ScanResult walk(ScanEngine engine, Path root, Consumer<ScanResult> listener) {
+        return walk(engine, root, listener, 0);
+    }
+
+    /**
+     * Same as {@link #walk(ScanEngine, Path, Consumer)}, but if sampleSize isn't 0 the files are only counted and sampled instead of parsed.
+     * See {@link Estimate}.
+     */
+    static ScanResult walk(ScanEngine engine, Path root, Consumer<ScanResult> listener, int sampleSize) {
+        var results = new ScanResult.PerWorker(listener != null, sampleSize);
+        var exclusions = engine.exclusions;
+        if (exclusions.isExcludedDirectory(root)) {
+            return results.merge();
+        }
+        String relativePath = exclusions.needsRelativePath() ? exclusions.relativize(root) : "";
+        var rules = exclusions.parentRulesFor(root);
+        var task = POOL.submit(new DirectoryTask(engine, exclusions, root, exclusions.locate(root), relativePath, rules, results));
+        if (listener != null) {
+            while (!task.isDone()) {
+                try {
+                    task.get(SNAPSHOT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    listener.accept(results.collect());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    break; // Rethrown by join()
+                }
+            }
+        }
+        task.join();
+        return results.merge();
+    }
+
+    /**
+     * Counts the '\n' bytes of a large file in ranges of {@link #RANGE_SIZE} on the pool. The counts of the ranges simply add up.
+     *
+     * @throws java.util.concurrent.CancellationException if the progress was cancelled
+     */
+    static int countLines(Path path, ScanProgress progress) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var task = new RangeTask(channel, 0, channel.size(), progress);
+            long lines;
+            try {
+                // Workers help with the ranges while waiting, the calling thread of an incremental update hands it to the pool
+                lines = ForkJoinTask.inForkJoinPool() ? task.invoke() : POOL.invoke(task);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return (int) Math.min(lines, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * @return true if a '\n' byte is always a line feed in the charset, so a file can be split after one and decoded per range
+     */
+    static boolean canSplit(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8)) return true;
+        if (!charset.canEncode()) return false;
+        return charset.newEncoder().maxBytesPerChar() == 1 && Arrays.equals("\n".getBytes(charset), new byte[]{'\n'});
+    }
+
+    /**
+     * Classifies a large file in ranges of about {@link #RANGE_SIZE} on the pool. Ranges end after a '\n' byte, so each starts a new line
+     * and only the open block comment has to be carried over, see {@link LineClassifier#openBlock()}.
+     * All ranges are classified as if they start outside a block comment. The few that actually start inside one are classified again
+     * in order when the counts are added up. Needs a charset that {@link #canSplit(Charset)}.
+     *
+     * @param classifier gets the counts of all ranges added. If a range can't be decoded, it keeps the ranges before and the lines
+     *                   completed in that range, like {@link LineClassifier#classify(java.io.Reader, ScanProgress)}
+     * @throws java.util.concurrent.CancellationException if the progress was cancelled
+     */
+    static void classify(Path path, Charset charset, LineClassifier classifier, ScanProgress progress) throws IOException {
+        classify(path, charset, classifier, progress, RANGE_SIZE);
+    }
+
+    static void classify(Path path, Charset charset, LineClassifier classifier, ScanProgress progress, long rangeSize) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var starts = lineStarts(channel, rangeSize);
+            var ranges = new ClassifyTask[starts.length - 1];
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = new ClassifyTask(channel, starts[i], starts[i + 1], charset, classifier.startingIn(null), progress);
+            }
+            var task = ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(ranges));
+            if (ForkJoinTask.inForkJoinPool()) {
+                task.invoke();
+            } else {
+                POOL.invoke(task);
+            }
+
+            for (var range : ranges) {
+                if (classifier.openBlock() != null) {
+                    range.classifier = classifier.startingIn(classifier.openBlock());
+                    range.compute();
+                }
+                classifier.add(range.classifier);
+                if (range.error != null) throw range.error;
+            }
+        }
+    }
+
+    /**
+     * @return the positions the ranges start at, each after a '\n' byte, followed by the size of the file
+     */
+    private static long[] lineStarts(FileChannel channel, long rangeSize) throws IOException {
+        long size = channel.size();
+        var starts = new long[(int) (size / rangeSize) + 2];
+        int count = 1;
+        var buffer = ByteBuffer.allocate(8192);
+        long position = rangeSize;
+        search:
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    long start = position + i + 1;
+                    if (start >= size) break search;
+                    starts[count++] = start;
+                    position = start + rangeSize;
+                    continue search;
+                }
+            }
+            position += read;
+        }
+        starts[count++] = size;
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * Parses the given files in batches on the pool, like the files of a directory
+     *
+     * @param files is sorted by size
+     */
+    static ScanResult parse(ScanEngine engine, List<FileInfo> files) {
+        var results = new ScanResult.PerWorker();
+        if (!files.isEmpty()) {
+            files.sort(Comparator.comparingLong((FileInfo file) -> file.size).reversed());
+            POOL.invoke(new FileBatchTask(engine, results, files, 0, files.size()));
+        }
+        return results.merge();
+    }
+
+    /**
+     * @return the end of the batch starting at the given file, at least one file
+     */
+    private static int batchEnd(List<FileInfo> files, int from) {
+        long bytes = files.get(from).size;
+        int end = from + 1;
+        while (end < files.size() && end - from < BATCH_FILES && bytes + files.get(end).size <= BATCH_BYTES) {
+            bytes += files.get(end++).size;
+        }
+        return end;
+    }
+
+    private static void parseFiles(ScanEngine engine, ScanResult.PerWorker results, List<FileInfo> files, int from, int to) {
+        var progress = engine.progress;
+        var result = results.acquire();
+        try {
+            for (int i = from; i < to; i++) {
+                progress.checkCancelled();
+                engine.visitIncludedFile(files.get(i), result);
+            }
+        } finally {
+            results.release();
+        }
+    }
+
+    private static final class FileBatchTask extends RecursiveAction {
+        private final transient ScanEngine engine;
+        private final transient ScanResult.PerWorker results;
+        private final transient List<FileInfo> files;
+        private final int from;
+        private final int to;
+
+        FileBatchTask(ScanEngine engine, ScanResult.PerWorker results, List<FileInfo> files, int from, int to) {
+            this.engine = engine;
+            this.results = results;
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            // More than one batch, the rest is split off for other workers
+            int end = batchEnd(files, from);
+            if (end < to) {
+                var rest = new FileBatchTask(engine, results, files, end, to);
+                rest.fork();
+                parseFiles(engine, results, files, from, end);
+                rest.join();
+            } else {
+                parseFiles(engine, results, files, from, to);
+            }
+        }
+    }
+
+    private static final class RangeTask extends RecursiveTask<Long> {
+        private final transient FileChannel channel;
+        private final long position;
+        private final long length;
+        private final transient ScanProgress progress;
+
+        RangeTask(FileChannel channel, long position, long length, ScanProgress progress) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+            this.progress = progress;
+        }
+
+        @Override
+        protected Long compute() {
+            progress.checkCancelled();
+            if (length <= RANGE_SIZE) {
+                try {
+                    return LineCounter.countLines(channel, position, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            long half = Math.max(RANGE_SIZE, length / 2 / RANGE_SIZE * RANGE_SIZE);
+            var right = new RangeTask(channel, position + half, length - half, progress);
+            right.fork();
+            long left = new RangeTask(channel, position, half, progress).compute();
+            return left + right.join();
+        }
+    }
+
+    private static final class ClassifyTask extends RecursiveAction {
+        private final transient FileChannel channel;
+        private final long start;
+        private final long end;
+        private final transient Charset charset;
+        private final transient ScanProgress progress;
+        private transient LineClassifier classifier;
+        private transient IOException error;
+
+        ClassifyTask(FileChannel channel, long start, long end, Charset charset, LineClassifier classifier, ScanProgress progress) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.charset = charset;
+            this.classifier = classifier;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            error = null;
+            try (var reader = new InputStreamReader(new RangeInputStream(channel, start, end), charset.newDecoder())) {
+                classifier.classify(reader, progress);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * Reads the bytes of a range with positional reads, so the ranges can share the channel
+     */
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.end = end;
+            position = start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) return 0;
+            if (position >= end) return -1;
+            int read = channel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - position)), position);
+            if (read <= 0) return -1;
+            position += read;
+            return read;
+        }
+    }
+
+    private static final class DirectoryTask extends RecursiveAction {
+        private final transient ScanEngine engine;
+        private final transient ExclusionMatcher exclusions;
+        private final transient Path directory;
+        /**
+         * Trie node of this directory, null if no excluded directory lies below it
+         */
+        private final transient ExclusionMatcher.Node node;
+        /**
+         * Only built if there are regexes or ignore files
+         */
+        private final transient String relativePath;
+        /**
+         * Ignore rules of the parent directories, without the ones of this directory
+         */
+        private final transient IgnoreRules parentRules;
+        private final transient ScanResult.PerWorker results;
+
+        DirectoryTask(ScanEngine engine, ExclusionMatcher exclusions, Path directory, ExclusionMatcher.Node node, String relativePath, IgnoreRules parentRules, ScanResult.PerWorker results) {
+            this.engine = engine;
+            this.exclusions = exclusions;
+            this.directory = directory;
+            this.node = node;
+            this.relativePath = relativePath;
+            this.parentRules = parentRules;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            engine.progress.checkCancelled();
+            var metrics = engine.metrics;
+            long start = System.nanoTime();
+            List<Path> entries = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            List<BasicFileAttributes> entryAttrs = new ArrayList<>();
+            int[] ignoreFiles = null;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        // Same as Files.walkFileTree: links are not followed and reported as files
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    attrs = FileInfo.resolveLink(entry, attrs);
+                    String name = entry.getFileName().toString();
+                    if (exclusions.usesIgnoreFiles()) {
+                        int precedence = IgnoreRules.precedence(name);
+                        if (precedence != -1) {
+                            if (ignoreFiles == null) {
+                                ignoreFiles = new int[IgnoreRules.fileCount()];
+                                Arrays.fill(ignoreFiles, -1);
+                            }
+                            ignoreFiles[precedence] = entries.size();
+                        }
+                    }
+                    entries.add(entry);
+                    names.add(name);
+                    entryAttrs.add(attrs);
+                }
+            } catch (IOException | DirectoryIteratorException ignored) {
+                // Unreadable directories are skipped, the rest of the tree is still counted
+            }
+            long listed = System.nanoTime();
+            metrics.add(ScanMetrics.Phase.WALK, listed - start);
+
+            var rules = parentRules;
+            if (ignoreFiles != null) {
+                for (int index : ignoreFiles) {
+                    if (index != -1) rules = rules.withFile(entries.get(index), entryAttrs.get(index), relativePath);
+                }
+            }
+
+            boolean needsRelativePath = exclusions.needsRelativePath();
+            List<DirectoryTask> subTasks = new ArrayList<>();
+            List<FileInfo> files = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                String name = names.get(i);
+                if (entryAttrs.get(i).isDirectory()) {
+                    var child = node == null ? null : node.child(name);
+                    if (child != null && child.isExcluded()) continue;
+                    if (needsRelativePath) {
+                        String childPath = ExclusionMatcher.child(relativePath, name);
+                        if (!exclusions.isExcludedDirectory(childPath, rules)) {
+                            subTasks.add(new DirectoryTask(engine, exclusions, entries.get(i), child, childPath, rules, results));
+                        }
+                    } else {
+                        subTasks.add(new DirectoryTask(engine, exclusions, entries.get(i), child, relativePath, rules, results));
+                    }
+                } else if (!needsRelativePath || !exclusions.isExcludedFile(relativePath, name, rules)) {
+                    files.add(new FileInfo(entries.get(i), name, entryAttrs.get(i)));
+                }
+            }
+            metrics.add(ScanMetrics.Phase.EXCLUSIONS, System.nanoTime() - listed);
+
+            // Fork the subdirectories first so idle workers can steal them while this one parses its own files
+            for (var task : subTasks) {
+                task.fork();
+            }
+            List<FileBatchTask> batches = new ArrayList<>();
+            if (!files.isEmpty()) {
+                // Stolen tasks are taken oldest first, so the largest files get started first
+                files.sort(Comparator.comparingLong((FileInfo file) -> file.size).reversed());
+                int firstEnd = batchEnd(files, 0);
+                for (int from = firstEnd; from < files.size(); ) {
+                    int to = batchEnd(files, from);
+                    var batch = new FileBatchTask(engine, results, files, from, to);
+                    batch.fork();
+                    batches.add(batch);
+                    from = to;
+                }
+                parseFiles(engine, results, files, 0, firstEnd);
+            }
+            for (int i = batches.size() - 1; i >= 0; i--) {
+                batches.get(i).join();
+            }
+            for (int i = subTasks.size() - 1; i >= 0; i--) {
+                subTasks.get(i).join();
+            }
+        }
+    }
+}
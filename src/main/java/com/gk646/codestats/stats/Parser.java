@@ -27,9 +27,10 @@ package com.gk646.codestats.stats;
 import com.gk646.codestats.CodeStatsWindow;
 import com.gk646.codestats.settings.PersistentSave;
 import com.gk646.codestats.settings.SettingsPanel;
+import com.gk646.codestats.ui.DiagnosticsPanel;
 import com.gk646.codestats.ui.LineChartPanel;
+import com.gk646.codestats.ui.TypedRowSorter;
 import com.gk646.codestats.ui.UIHelper;
-import com.gk646.codestats.util.BoolContainer;
 import com.gk646.codestats.util.IntellijUtil;
 import com.gk646.codestats.util.ParsingUtil;
 import com.gk646.codestats.util.TimePoint;
@@ -51,24 +52,13 @@ import javax.swing.JTable;
 import javax.swing.RowSorter;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableCellRenderer;
-import javax.swing.table.TableRowSorter;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.File;
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -78,90 +68,106 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 /**
- * Handles all the parsing of source and non-source files.
- * Also, responsible currently for rebuilding the tables in {@link #rebuildTabbedPane()}. <br>
+ * Runs the updates of the tool window with a {@link ScanEngine} built from the persisted settings and shows the results.
+ * Also, responsible currently for rebuilding the tables in {@link #rebuildTabbedPane(Path, ScanMetrics)}. <br>
  * This class is still quite messy.
  */
 @SuppressWarnings("DialogTitleCapitalization")
 public final class Parser {
     public static final HashSet<String> separateTabs = new HashSet<>(16, 1);
     public static final HashMap<String, OverViewEntry> overView = new HashMap<>(10);
-    public static final HashMap<String, ArrayList<StatEntry>> tabs = new HashMap<>(6);
+    public static final HashMap<String, StatTable> tabs = new HashMap<>(6);
+    /**
+     * Newest commits counted by a backfill, the older ones end up combined per week or month by {@link com.gk646.codestats.util.TimelineRollup}
+     */
+    private static final int BACKFILL_COMMITS = 10_000;
+    /**
+     * The stats cache is written once no project update happened for this long, see {@link #scheduleCacheSave(Path)}
+     */
+    private static final long CACHE_SAVE_DELAY_SECONDS = 30;
+    private static final ScheduledExecutorService CACHE_WRITER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "CodeStats cache writer");
+        thread.setDaemon(true);
+        return thread;
+    });
     private static final HashSet<String> excludedTypes = new HashSet<>(16, 1);
     private static final HashSet<String> excludedDirs = new HashSet<>(16, 1);
     private static final HashSet<String> whiteListTypes = new HashSet<>(16, 1);
     private static final ArrayList<Pattern> excludedRegexes = new ArrayList<>(16);
-    private final FileVisitor<Path> visitor;
+    public final PendingChanges pendingChanges = new PendingChanges();
     public AtomicBoolean isUpdating = new AtomicBoolean(false);
+    private final AtomicBoolean isBackfilling = new AtomicBoolean(false);
     public boolean commitHappened = false;
     public String commitText;
     public Path projectPath;
-    Charset charset = StandardCharsets.UTF_8;
-    private boolean countMiscLines = false;
-    private DefaultTableModel overviewModel;
     private DefaultTableModel footerModel;
     private JBTable overviewTable;
     private JBTable footerTable;
+    /**
+     * Result of the last project update, the base for incremental updates. Only used on the update task thread.
+     */
+    private ScanResult projectResult;
+    /**
+     * Per file stats of the last project update, read from disk on the first one. See {@link StatsCache}.
+     */
+    private StatsCache statsCache;
+    private Path cacheFileRoot;
+    /**
+     * The write of the {@link #statsCache} that waits for updates to settle, null if the file is up to date
+     */
+    private ScheduledFuture<?> pendingCacheSave;
+    private Runnable pendingCacheWrite;
+    /**
+     * Does the counting with the current settings, replaced by {@link #updateState()}. A running update keeps the one it started with.
+     */
+    private volatile ScanEngine engine = new ScanEngine(null, currentSettings());
+    /**
+     * Timings of the last completed update, see {@link #getLastMetrics()}
+     */
+    private volatile ScanMetrics lastMetrics;
+    /**
+     * Number of parsed files of the last update per scanned directory, the estimate for the progress of the next one
+     */
+    private final HashMap<Path, Integer> lastFileCounts = new HashMap<>();
+    /**
+     * Set if the shown stats are an estimate, the footer then shows the error of the line totals
+     */
+    private Estimate lastEstimate;
 
     public Parser() {
-        visitor = new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) {
-                String pathString = path.toString();
-
-                if (excludedDirs.contains(pathString)) {
-                    return FileVisitResult.SKIP_SUBTREE;
-                }
-
-                if (!excludedRegexes.isEmpty()) { // Don't cause slowdown
-                    // Needed for platform independent regex
-                    String relativePath = projectPath.relativize(path).toString().replace('\\','/');
-                    for (Pattern pat : excludedRegexes) {
-                        if (pat.matcher(relativePath).matches()) {
-                            return FileVisitResult.SKIP_SUBTREE;
-                        }
-                    }
-                }
-                return FileVisitResult.CONTINUE;
-            }
+        initializeOverviewTab(); // Comment this when testing - haha this code is a hot mess ... :(.
+    }
 
-            @Override
-            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
-                String extension = ParsingUtil.getFileExtension(path.getFileName().toString());
-
-                if (!excludedRegexes.isEmpty()) { // Don't cause slowdown
-                    // Needed for platform independent regex
-                    String relativePath = projectPath.relativize(path).toString().replace('\\','/');
-                    for (Pattern pat : excludedRegexes) {
-                        if (pat.matcher(relativePath).matches()) {
-                            return FileVisitResult.CONTINUE;
-                        }
-                    }
-                }
+    /**
+     * See {@link ScanEngine#isExcludedPath(Path)}
+     */
+    public boolean isExcludedPath(Path path) {
+        return engine.isExcludedPath(path);
+    }
 
-                if (whiteListTypes.isEmpty()) {
-                    if (!extension.isEmpty() && !excludedTypes.contains(extension)) {
-                        parseFile(path, extension);
-                    }
-                } else if (whiteListTypes.contains(extension)) {
-                    parseFile(path, extension);
-                }
-                return FileVisitResult.CONTINUE;
-            }
-        };
-        initializeOverviewTab(); // Comment this when testing - haha this code is a hot mess ... :(.
+    /**
+     * See {@link ScanEngine#isIgnoreRulesFile(Path)}
+     */
+    public boolean isIgnoreRulesFile(Path path) {
+        return engine.isIgnoreRulesFile(path);
     }
 
     private void initializeOverviewTab() {
-        String[] columnNames = {"Extension", "Count", "Size SUM", "Size MIN", "Size MAX", "Size AVG", "Lines", "Lines MIN", "Lines MAX", "Lines AVG", "Lines CODE"};
-        overviewModel = new DefaultTableModel(columnNames, 0);
+        var overviewModel = new OverViewTableModel(Map.of());
         overviewTable = new JBTable(overviewModel);
-        setupTable(overviewTable, UIHelper.OverViewTableCellRenderer, UIHelper.getOverViewTableSorter(new TableRowSorter<>(overviewModel)));
+        setupTable(overviewTable, UIHelper.OverViewTableCellRenderer, new TypedRowSorter(overviewModel));
 
         footerModel = new DefaultTableModel(new String[]{"", "", "", "", "", "", "", "", "", "", ""}, 1);
         footerTable = new JBTable(footerModel);
@@ -193,6 +199,7 @@ public final class Parser {
 
     public void updateState() {
         var save = PersistentSave.getInstance();
+        pendingChanges.invalidate();
         excludedTypes.clear();
         excludedDirs.clear();
         separateTabs.clear();
@@ -211,74 +218,99 @@ public final class Parser {
             excludedDirs.add(Path.of(dir).toString());
         }
 
+        var settings = currentSettings();
         //checkbox options
-        if (save.isExcludeIDE) {
-            excludedDirs.add(projectPath + File.separator + ".idea");
-            excludedDirs.add(projectPath + File.separator + ".vs");
-            excludedDirs.add(projectPath + File.separator + ".settings");
-            excludedDirs.add(projectPath + File.separator + ".project");
-            excludedDirs.add(projectPath + File.separator + ".classpath");
-        }
-
-        if (save.isExcludeNPM) {
-            excludedDirs.add(projectPath + File.separator + "node_modules");
-            excludedDirs.add(projectPath + File.separator + ".docker");
-        }
-
-        if (save.excludeCompiler) {
-            excludedDirs.add(projectPath + File.separator + "out");
-            excludedDirs.add(projectPath + File.separator + "build");
-            excludedDirs.add(projectPath + File.separator + ".gradle");
-            excludedDirs.add(projectPath + File.separator + "target");
-            excludedDirs.add(projectPath + File.separator + "cmake-build-debug");
-            excludedDirs.add(projectPath + File.separator + "cmake-build-release");
-            excludedDirs.add(projectPath + File.separator + "cmake-build-Release");
-            excludedDirs.add(projectPath + File.separator + "cmake-build-Debug");
-            excludedDirs.add(projectPath + File.separator + "dist");
-            excludedDirs.add(projectPath + File.separator + "bin");
-            excludedDirs.add(projectPath + File.separator + "obj");
-        }
-
-        if (save.excludeGit) {
-            excludedDirs.add(projectPath + File.separator + ".git");
-            excludedDirs.add(projectPath + File.separator + "gitignore");
-            excludedDirs.add(projectPath + File.separator + ".svn");
-            excludedDirs.add(projectPath + File.separator + ".hg");
-        }
-
-        if (save.isExcludeCache) {
-            excludedDirs.add(projectPath + File.separator + ".cache");
-            excludedDirs.add(projectPath + File.separator + "tmp");
-            excludedDirs.add(projectPath + File.separator + "temp");
-        }
-
-        if (save.isExcludePython) {
-            excludedDirs.add(projectPath + File.separator + "venv");
-            excludedDirs.add(projectPath + File.separator + "env");
-            excludedDirs.add(projectPath + File.separator + ".env");
-        }
+        if (save.isExcludeIDE) settings.excludeDirectories(projectPath, ScanSettings.IDE_DIRECTORIES);
+        if (save.isExcludeNPM) settings.excludeDirectories(projectPath, ScanSettings.NPM_DIRECTORIES);
+        if (save.excludeCompiler) settings.excludeDirectories(projectPath, ScanSettings.COMPILER_DIRECTORIES);
+        if (save.excludeGit) settings.excludeDirectories(projectPath, ScanSettings.VCS_DIRECTORIES);
+        if (save.isExcludeCache) settings.excludeDirectories(projectPath, ScanSettings.CACHE_DIRECTORIES);
+        if (save.isExcludePython) settings.excludeDirectories(projectPath, ScanSettings.PYTHON_DIRECTORIES);
 
-        charset = ParsingUtil.getCharsetFallback(save.charSet, StandardCharsets.UTF_8);
-        countMiscLines = save.countMiscLines;
+        settings.charset = ParsingUtil.getCharsetFallback(save.charSet, StandardCharsets.UTF_8);
+        settings.countMiscLines = save.countMiscLines;
+        settings.useIgnoreFiles = save.useIgnoreFiles;
 
         for (String regex : save.excludedRegex) {
             excludedRegexes.add(Pattern.compile(regex));
         }
+        IgnoreRules.clearCache();
+        engine = new ScanEngine(projectPath, settings);
+    }
+
+    /**
+     * @return settings that use the type and directory sets of the tool window, so changes to them apply to the engine as well
+     */
+    private static ScanSettings currentSettings() {
+        var settings = new ScanSettings();
+        settings.separateTabs = separateTabs;
+        settings.excludedTypes = excludedTypes;
+        settings.includedTypes = whiteListTypes;
+        settings.excludedDirectories = excludedDirs;
+        settings.excludedRegexes = excludedRegexes;
+        return settings;
     }
 
     public void updatePane(boolean isSilentUpdate, Path path) {
-        Task.Backgroundable task = new Task.Backgroundable(CodeStatsWindow.project, "Updating Code Stats", false) {
+        updatePane(isSilentUpdate, path, false);
+    }
+
+    /**
+     * @param isEstimate only read a sample of the files and extrapolate the line totals, see {@link Estimate}
+     */
+    public void updatePane(boolean isSilentUpdate, Path path, boolean isEstimate) {
+        Task.Backgroundable task = new Task.Backgroundable(CodeStatsWindow.project, isEstimate ? "Estimating Code Stats" : "Updating Code Stats", true) {
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
                 var time = System.currentTimeMillis();
-                resetCache();
-                iterateFiles(path);
+                var scanEngine = engine;
+                final int[] publishedFiles = {0};
+                // Partial overviews are posted in order before the final rebuild, which then replaces them in one go
+                Consumer<ScanResult> listener = partial -> {
+                    reportProgress(indicator, scanEngine.progress);
+                    if (partial.fileCount() == publishedFiles[0]) return;
+                    publishedFiles[0] = partial.fileCount();
+                    var snapshot = partial.copyOverView();
+                    ApplicationManager.getApplication().invokeLater(() -> fillOverView(snapshot));
+                };
+                final ScanResult result;
+                final Estimate estimate;
+                long scanStart = System.nanoTime();
+                try {
+                    if (isEstimate) {
+                        estimate = estimateFiles(scanEngine, path, indicator::isCanceled, listener);
+                        result = null;
+                    } else {
+                        result = iterateFiles(scanEngine, path, indicator::isCanceled, listener);
+                        estimate = null;
+                    }
+                } catch (CancellationException e) {
+                    // Nothing was replaced yet, so this shows the last complete stats again
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        fillOverView(overView);
+                        isUpdating.set(false);
+                    });
+                    return;
+                }
+                var scanMetrics = scanEngine.metrics;
+                scanMetrics.setScanNanos(System.nanoTime() - scanStart);
                 ApplicationManager.getApplication().invokeLater(() -> {
-                    rebuildTabbedPane(path);
+                    resetCache();
+                    lastEstimate = estimate;
+                    if (estimate != null) {
+                        overView.putAll(estimate.overView);
+                    } else {
+                        overView.putAll(result.overView);
+                        tabs.putAll(result.tabs);
+                    }
+                    rebuildTabbedPane(path, scanMetrics);
+                    lastMetrics = scanMetrics;
                     isUpdating.set(false);
                     if (isSilentUpdate) return;
                     var duration = System.currentTimeMillis() - time;
-                    var notification = new Notification("CodeStats", "Code Stats", "Update completed in " + String.format("%d", duration) + " ms.", NotificationType.INFORMATION);
+                    var message = estimate == null ? "Update completed in " + String.format("%d", duration) + " ms."
+                            : String.format("Estimate from %d of %d files completed in %d ms.", estimate.sampledFiles, estimate.totalFiles, duration);
+                    var notification = new Notification("CodeStats", "Code Stats", message, NotificationType.INFORMATION);
                     notification.setIcon(AllIcons.General.Information);
                     Notifications.Bus.notify(notification);
                 });
@@ -287,29 +319,96 @@ public final class Parser {
         ProgressManager.getInstance().run(task);
     }
 
-    private void rebuildTabbedPane(Path path) {
-        Locale germanLocale = Locale.GERMAN;
-        DecimalFormat df = new DecimalFormat("#,###kb", new DecimalFormatSymbols(germanLocale));
+    /**
+     * Counts the past commits of the project from its local git history and adds them to the commit timeline, see {@link HistoryScan}.
+     * Commits that already have a point are skipped.
+     */
+    public void backfillTimeline() {
+        if (!isBackfilling.compareAndSet(false, true)) return;
+        Task.Backgroundable task = new Task.Backgroundable(CodeStatsWindow.project, "Backfilling Commit Timeline", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                var time = System.currentTimeMillis();
+                var history = new HistoryScan(engine, indicator::isCanceled);
+                String message;
+                try {
+                    var commits = history.scan(BACKFILL_COMMITS, () -> {
+                        var progress = history.getProgress();
+                        reportProgress(indicator, progress);
+                        indicator.setText2(progress.getParsedFiles() + " commits");
+                    });
+                    if (commits == null) {
+                        message = "No git repository found for this project.";
+                    } else {
+                        var points = new ArrayList<TimePoint>(commits.size());
+                        for (var commit : commits) {
+                            points.add(new TimePoint(commit.timestamp(), (int) commit.codeLines(), (int) commit.totalLines(), commit.message()));
+                        }
+                        ApplicationManager.getApplication().invokeLater(() -> {
+                            PersistentSave.addCommitHistory(points);
+                            CodeStatsWindow.TIME_LINE.refreshChart();
+                        });
+                        message = String.format("Counted %d commits in %d ms.", commits.size(), System.currentTimeMillis() - time);
+                    }
+                } catch (CancellationException e) {
+                    return;
+                } catch (IOException e) {
+                    message = "Failed to read the git history: " + e.getMessage();
+                } finally {
+                    isBackfilling.set(false);
+                }
+                var notification = new Notification("CodeStats", "Code Stats", message, NotificationType.INFORMATION);
+                notification.setIcon(AllIcons.General.Information);
+                Notifications.Bus.notify(notification);
+            }
+        };
+        ProgressManager.getInstance().run(task);
+    }
+
+    private static void reportProgress(ProgressIndicator indicator, ScanProgress progress) {
+        double fraction = progress.getFraction();
+        indicator.setIndeterminate(fraction < 0);
+        if (fraction >= 0) {
+            indicator.setFraction(fraction);
+        }
+        indicator.setText2(progress.getParsedFiles() + " files");
+    }
+
+    /**
+     * @param scanMetrics gets the time of the table rebuild and timeline, shown in the diagnostics tab added last
+     */
+    private void rebuildTabbedPane(Path path, ScanMetrics scanMetrics) {
+        long start = System.nanoTime();
+        // Old tabs stay until here, so a cancelled update leaves them untouched
+        for (int i = CodeStatsWindow.TABBED_PANE.getTabCount() - 1; i > 0; i--) {
+            CodeStatsWindow.TABBED_PANE.remove(i);
+        }
+        var footer = fillOverView(overView);
+
+        //Adds the new timeline tab as the second tab ONLY IF it's a normal refresh
+        long timelineNanos = 0;
+        if (path.equals(projectPath) && lastEstimate == null) {
+            long timelineStart = System.nanoTime();
+            handleTimelineTab((int) footer[10], (int) footer[6]);
+            timelineNanos = System.nanoTime() - timelineStart;
+            scanMetrics.add(ScanMetrics.Phase.TIMELINE, timelineNanos);
+        } else {
+            CodeStatsWindow.TABBED_PANE.addTab("Refresh to reset view", AllIcons.Actions.QuickfixBulb, new JTabbedPane());
+        }
+        //Build the separate tabs
+        buildSeparateTabs();
+        scanMetrics.add(ScanMetrics.Phase.TABLES, System.nanoTime() - start - timelineNanos);
+        CodeStatsWindow.TABBED_PANE.addTab("Diagnostics", AllIcons.Actions.Profile, new DiagnosticsPanel(scanMetrics));
+    }
 
-        var data = new Object[overView.size()][];
+    /**
+     * Fills the OverView table and its footer, either with the final stats or a partial snapshot during an update.
+     *
+     * @return the footer row
+     */
+    private Object[] fillOverView(Map<String, OverViewEntry> entries) {
         var footerData = new Object[][]{{"Total:", 0, 0L, 0L, 0L, 0L, 0, 0, 0, 0, 0}};
-        int i = 0;
-        for (var pair : overView.entrySet()) {
-            var entry = pair.getValue();
-            long sizeAvg = entry.sizeSum / entry.count / 1000;
-            data[i] = new Object[]{
-                    pair.getKey(),
-                    entry.count + "x",
-                    df.format(entry.sizeSum / 1000),
-                    df.format(entry.sizeMin / 1000),
-                    df.format(entry.sizeMax / 1000),
-                    df.format(sizeAvg),
-                    entry.lines,
-                    entry.linesMin,
-                    entry.linesMax,
-                    entry.lines / entry.count,
-                    entry.linesCode
-            };
+        for (var entry : entries.values()) {
             footerData[0][1] = (int) footerData[0][1] + entry.count;
             footerData[0][2] = (long) footerData[0][2] + entry.sizeSum / 1000;
             footerData[0][3] = (long) footerData[0][3] + entry.sizeMin / 1000;
@@ -320,21 +419,26 @@ public final class Parser {
             footerData[0][8] = (int) footerData[0][8] + entry.linesMax;
             footerData[0][9] = (int) footerData[0][9] + entry.lines / entry.count;
             footerData[0][10] = (int) footerData[0][10] + entry.linesCode;
-            i++;
+        }
+        if (lastEstimate != null && entries == overView) {
+            footerData[0][6] = formatEstimate(lastEstimate.lines, lastEstimate.linesError);
+            footerData[0][10] = formatEstimate(lastEstimate.codeLines, lastEstimate.codeLinesError);
         }
 
-        overviewModel.setDataVector(data, new String[]{"Extension", "Count", "Size SUM", "Size MIN", "Size MAX", "Size AVG", "Lines", "Lines MIN", "Lines MAX", "Lines AVG", "Lines CODE"});
-        setupTable(overviewTable, UIHelper.OverViewTableCellRenderer, UIHelper.getOverViewTableSorter(new TableRowSorter<>(overviewModel)));
+        // Keep the sorting of the user across partial snapshots and updates
+        var sortKeys = overviewTable.getRowSorter().getSortKeys();
+        var overviewModel = new OverViewTableModel(entries);
+        overviewTable.setModel(overviewModel);
+        var sorter = new TypedRowSorter(overviewModel);
+        sorter.setSortKeys(sortKeys);
+        overviewTable.setRowSorter(sorter);
         footerModel.setDataVector(footerData, new String[]{"", "", "", "", "", "", "", "", "", "", ""});
 
-        //Adds the new timeline tab as the second tab ONLY IF it's a normal refresh
-        if (path.equals(projectPath)) {
-            handleTimelineTab((int) footerData[0][10], (int) footerData[0][6]);
-        } else {
-            CodeStatsWindow.TABBED_PANE.addTab("Refresh to reset view", AllIcons.Actions.QuickfixBulb, new JTabbedPane());
-        }
-        //Build the separate tabs
-        buildSeparateTabs();
+        return footerData[0];
+    }
+
+    private static String formatEstimate(long value, long error) {
+        return String.format("~%d \u00B1 %d", value, error);
     }
 
     private void handleTimelineTab(int linesCode, int totalLines) {
@@ -353,52 +457,32 @@ public final class Parser {
     }
 
     private void buildSeparateTabs() {
-        var columnNames = new String[]{"Source File", "Total Lines", "Source Code Lines", "Source Code Lines [%]", "Comment Lines", "Documentation Lines", "Blank Lines", "Blank Lines [%]"};
-
         for (var pair : tabs.entrySet()) {
-            var fileList = pair.getValue();
-            if (fileList.isEmpty()) continue;
-
-            var data = new Object[fileList.size()][];
-            var footerTotals = new int[]{0, 0, 0, 0, 0}; // Total Lines, Source Code Lines, Comment Lines, Blank Lines
-            int i = 0;
-
-            for (var entry : fileList) {
-                data[i++] = new Object[]{entry.name,
-                        entry.totalLines,
-                        entry.sourceCodeLines,
-                        (int) (entry.sourceCodeLines * 100.0f / entry.totalLines + 0.5) + "%",
-                        entry.commentLines,
-                        entry.docLines, entry.blankLines,
-                        (int) (entry.blankLines * 100.0f / entry.totalLines + 0.5) + "%"};
-
-                footerTotals[0] += entry.totalLines;
-                footerTotals[1] += entry.sourceCodeLines;
-                footerTotals[2] += entry.commentLines;
-                footerTotals[3] += entry.docLines;
-                footerTotals[4] += entry.blankLines;
-            }
+            var table = pair.getValue();
+            if (table.size() == 0) continue;
 
+            long totalLines = table.sum(StatTable.TOTAL);
+            long sourceCodeLines = table.sum(StatTable.SOURCE_CODE);
+            long blankLines = table.sum(StatTable.BLANK);
             var footerData = new Object[][]{
                     {"Total:",
-                            footerTotals[0],
-                            footerTotals[1],
-                            String.format("%d%%", (int) (100 * (footerTotals[1] / (float) footerTotals[0]))),
-                            footerTotals[2],
-                            footerTotals[3],
-                            footerTotals[4],
-                            String.format("%d%%", (int) (100 * (footerTotals[4] / (float) footerTotals[0])))
+                            totalLines,
+                            sourceCodeLines,
+                            String.format("%d%%", (int) (100 * (sourceCodeLines / (float) totalLines))),
+                            table.sum(StatTable.COMMENT),
+                            table.sum(StatTable.DOC),
+                            blankLines,
+                            String.format("%d%%", (int) (100 * (blankLines / (float) totalLines)))
                     }
             };
 
-            createAndAddTab(pair.getKey(), data, footerData, columnNames);
+            createAndAddTab(pair.getKey(), new StatTableModel(table), footerData);
         }
     }
 
-    private void createAndAddTab(String tabName, Object[][] data, Object[][] footerData, String[] columnNames) {
-        var tabTableModel = new DefaultTableModel(data, columnNames);
+    private void createAndAddTab(String tabName, StatTableModel tabTableModel, Object[][] footerData) {
         var table = new JBTable(tabTableModel);
-        setupTable(table, UIHelper.SeparateTableCellRenderer, UIHelper.getSeparateTabTableSorter(new TableRowSorter<>(tabTableModel)));
+        setupTable(table, UIHelper.SeparateTableCellRenderer, new TypedRowSorter(tabTableModel));
 
         var tabFooterModel = new DefaultTableModel(footerData, new String[]{"", "", "", "", "", "", "", ""});
         var tabFooterTable = new JBTable(tabFooterModel);
@@ -417,7 +501,7 @@ public final class Parser {
                     int row = target.getSelectedRow();
                     if (row != -1) {
                         // Assuming the first column contains the file path or name
-                        String filePath = (String) table.getModel().getValueAt(table.convertRowIndexToModel(row), 0);
+                        String filePath = (String) table.getModel().getValueAt(table.convertRowIndexToModel(row), StatTableModel.NAME);
                         IntellijUtil.openFileInEditor(filePath, table);
                     }
                 }
@@ -427,111 +511,135 @@ public final class Parser {
         CodeStatsWindow.TABBED_PANE.addTab(tabName, AllIcons.General.ArrowSplitCenterH, panel);
     }
 
-    public void parseFile(Path path, String extension) {
-        overView.computeIfAbsent(extension, k -> new OverViewEntry());
-
-        if (separateTabs.contains(extension)) {
-            var entry = new StatEntry(path.getFileName().toString());
-            long size = 0;
-            final int[] miscLines = {0}; // New concept - misc lines are deducted from source code lines as well but not shown
-            var stateFlags = new BoolContainer(); // first = multiline comment / second = multiline doc
-            try {
-                size = Files.size(path);
-                try (Stream<String> linesStream = Files.newBufferedReader(path, charset).lines()) {
-                    linesStream.forEach(line -> {
-                        line = line.trim();
-                        if (stateFlags.multiLineCommentJava || stateFlags.multiLineDocJava || stateFlags.multiLineLIneDocPython) {
-                            if (stateFlags.multiLineDocJava && line.startsWith("*")) {
-                                entry.docLines++;
-                            }
-                            if (stateFlags.multiLineCommentJava) {
-                                entry.commentLines++;
-                            }
-                            if (stateFlags.multiLineLIneDocPython) {
-                                entry.docLines++;
-                            }
-                            if (line.contains("*/")) {
-                                stateFlags.multiLineCommentJava = false;
-                                stateFlags.multiLineDocJava = false;
-                            } else if (line.contains("\"\"\"")) {
-                                stateFlags.multiLineLIneDocPython = false;
-                            }
-                        } else {
-                            if (line.isEmpty()) {
-                                entry.blankLines++;
-                            } else if (line.startsWith("//") || line.startsWith("#") || line.startsWith("--")) {
-                                entry.commentLines++;
-                            } else if (line.startsWith("/*")) {
-                                stateFlags.multiLineCommentJava = true;
-                                entry.commentLines++;
-                                if (line.startsWith("/**")) {
-                                    stateFlags.multiLineDocJava = true;
-                                    stateFlags.multiLineCommentJava = false;
-                                    entry.commentLines--;
-                                    entry.docLines++;
-                                }
-                            } else if (line.startsWith("\"\"\"")) {
-                                stateFlags.multiLineLIneDocPython = true;
-                                if (line.contains("\"\"\"")) {
-                                    entry.docLines++;
-                                    stateFlags.multiLineLIneDocPython = false;
-                                }
-                            } else if (line.startsWith("import") || line.startsWith("#include") || line.startsWith("package") || line.startsWith("from")) {
-                                miscLines[0]++;
-                            }
-                        }
-                        entry.totalLines++;
-                    });
-                }
-            } catch (UncheckedIOException | IOException e) {
-                try {
-                    if (size > 50000000) {
-                        entry.totalLines = ParsingUtil.parseLargeNonUTFFile(path);
-                    } else {
-                        entry.totalLines = ParsingUtil.parseSmallNonUTFFile(path);
-                    }
-                } catch (IOException ignored) {
-                }
-            }
-            //setting separate tab entry data
-            entry.sourceCodeLines = entry.totalLines - entry.blankLines - entry.commentLines - entry.docLines;
-            if (!countMiscLines) entry.sourceCodeLines -= miscLines[0];
+    /**
+     * See {@link ScanEngine#parseFile(Path, String, ScanResult)}
+     */
+    public void parseFile(Path path, String extension, ScanResult result) {
+        engine.parseFile(path, extension, result);
+    }
+
+    /**
+     * @param cancelRequested polled by the workers, see {@link ScanProgress}
+     * @param listener        gets partial results while a full walk is running, see {@link ParallelWalker#walk(ScanEngine, Path, Consumer)}
+     * @throws CancellationException if cancelled, the previous stats stay as they were
+     */
+    private ScanResult iterateFiles(ScanEngine scanEngine, Path path, BooleanSupplier cancelRequested, Consumer<ScanResult> listener) {
+        var fingerprint = scanEngine.fingerprint();
+        var cacheFile = getCacheFile();
+        if (cacheFile != null && !projectPath.equals(cacheFileRoot)) {
+            statsCache = StatsCache.load(cacheFile, projectPath, fingerprint);
+            cacheFileRoot = projectPath;
+        }
+        // Counts depend on these settings
+        if (statsCache != null && !statsCache.getFingerprint().equals(fingerprint)) {
+            statsCache = null;
+        }
 
-            //setting over view entry data
-            overView.get(extension).addValues(size, entry.totalLines, entry.sourceCodeLines);
+        int expectedFiles = lastFileCounts.getOrDefault(path, 0);
+        if (expectedFiles == 0 && path.equals(projectPath) && statsCache != null) {
+            expectedFiles = statsCache.size();
+        }
+        scanEngine.start(expectedFiles, cancelRequested);
+        scanEngine.statsCache = statsCache;
 
-            tabs.get(extension).add(entry);
-        } else {
-            int lines = 0;
-            long size = 0;
-            try {
-                size = Files.size(path);
-                if (size > 50000000) {
-                    lines = ParsingUtil.parseLargeNonUTFFile(path);
-                } else {
-                    lines = ParsingUtil.parseSmallNonUTFFile(path);
-                }
-            } catch (IOException ignored) {
-            }
+        var result = path.equals(projectPath) ? scanProject(scanEngine, cacheFile, listener) : ParallelWalker.walk(scanEngine, path, listener);
+        lastFileCounts.put(path, result.files.size());
+        return result;
+    }
 
-            //setting overview entry data
-            overView.get(extension).addValues(size, lines, 0);
+    /**
+     * Walks the directory but only parses a sample of the files per extension, see {@link Estimate}
+     *
+     * @throws CancellationException if cancelled, the previous stats stay as they were
+     */
+    private Estimate estimateFiles(ScanEngine scanEngine, Path path, BooleanSupplier cancelRequested, Consumer<ScanResult> listener) {
+        scanEngine.start(lastFileCounts.getOrDefault(path, 0), cancelRequested);
+        var walked = ParallelWalker.walk(scanEngine, path, listener, Estimate.SAMPLE_SIZE);
+        var files = new ArrayList<FileInfo>();
+        for (var sample : walked.samples.values()) {
+            files.addAll(sample.files());
         }
+        var estimate = Estimate.of(walked, ParallelWalker.parse(scanEngine, files));
+        lastFileCounts.put(path, estimate.totalFiles);
+        return estimate;
     }
 
-    private void iterateFiles(Path path) {
+    /**
+     * Only re-reads the files changed since the last project update if possible, otherwise walks the whole project.
+     * Afterward, the per file stats are saved for the next session once the updates settle.
+     */
+    private ScanResult scanProject(ScanEngine scanEngine, Path cacheFile, Consumer<ScanResult> listener) {
+        var changed = pendingChanges.drain();
         try {
-            Files.walkFileTree(path, visitor);
-        } catch (IOException e) {
-            e.printStackTrace();
+            if (projectResult == null || changed == null) {
+                projectResult = ParallelWalker.walk(scanEngine, projectPath, listener);
+            } else if (!changed.isEmpty()) {
+                projectResult = IncrementalScan.apply(scanEngine, projectResult, changed);
+            } else {
+                return projectResult;
+            }
+        } catch (CancellationException e) {
+            pendingChanges.invalidate(); // The drained changes are lost
+            throw e;
         }
+        // Shares the rows of the result instead of copying them, so only the changed files are new
+        statsCache = StatsCache.of(scanEngine.fingerprint(), projectResult.files);
+        if (cacheFile != null) {
+            scheduleCacheSave(cacheFile);
+        }
+        return projectResult;
+    }
+
+    /**
+     * Writes the current stats cache after {@link #CACHE_SAVE_DELAY_SECONDS}, a later update replaces the pending write.
+     * So a series of small refreshes doesn't rewrite the whole file each time.
+     */
+    private synchronized void scheduleCacheSave(Path cacheFile) {
+        var cache = statsCache;
+        var root = projectPath;
+        if (pendingCacheSave != null) pendingCacheSave.cancel(false);
+        pendingCacheWrite = () -> cache.save(cacheFile, root);
+        pendingCacheSave = CACHE_WRITER.schedule(this::writePendingCache, CACHE_SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes a pending stats cache right away, called when the project closes
+     */
+    public void flushStatsCache() {
+        Runnable write;
+        synchronized (this) {
+            if (pendingCacheSave != null) pendingCacheSave.cancel(false);
+            write = pendingCacheWrite;
+            pendingCacheSave = null;
+            pendingCacheWrite = null;
+        }
+        if (write != null) write.run();
+    }
+
+    private void writePendingCache() {
+        Runnable write;
+        synchronized (this) {
+            write = pendingCacheWrite;
+            pendingCacheSave = null;
+            pendingCacheWrite = null;
+        }
+        if (write != null) write.run();
+    }
+
+    private Path getCacheFile() {
+        var workspaceFile = CodeStatsWindow.project.getWorkspaceFile();
+        return workspaceFile == null ? null : workspaceFile.toNioPath().resolveSibling(StatsCache.FILE_NAME);
+    }
+
+    /**
+     * @return the timings of the last completed update, null before the first one
+     */
+    public ScanMetrics getLastMetrics() {
+        return lastMetrics;
     }
 
     private void resetCache() {
         overView.clear();
         tabs.clear();
-        for (var tab : separateTabs) {
-            tabs.put(tab, new ArrayList<>());
-        }
     }
 }
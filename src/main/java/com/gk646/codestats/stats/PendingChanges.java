@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects the paths reported by {@link com.gk646.codestats.util.VfsChangeListener} between two updates. <br>
+ * Starts out invalidated, as there is no previous result to apply changes to.
+ */
+public final class PendingChanges {
+    /**
+     * Above this many changed paths a full walk is cheaper than checking each of them
+     */
+    private static final int MAX_PENDING = 2000;
+    private final HashSet<Path> paths = new HashSet<>();
+    private boolean fullScanNeeded = true;
+
+    public synchronized void add(Path path) {
+        if (fullScanNeeded) return;
+        paths.add(path);
+        if (paths.size() > MAX_PENDING) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Forces the next project update to be a full walk e.g. after the settings changed
+     */
+    public synchronized void invalidate() {
+        fullScanNeeded = true;
+        paths.clear();
+    }
+
+    /**
+     * Takes all pending paths. Called right before an update, so changes that happen during it are kept for the next one.
+     *
+     * @return the changed paths or null if a full walk is needed
+     */
+    synchronized Set<Path> drain() {
+        if (fullScanNeeded) {
+            fullScanNeeded = false;
+            paths.clear();
+            return null;
+        }
+        var drained = new HashSet<>(paths);
+        paths.clear();
+        return drained;
+    }
+}
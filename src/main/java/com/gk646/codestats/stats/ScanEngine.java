@@ -0,0 +1,355 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import com.gk646.codestats.util.LineCounter;
+import com.gk646.codestats.util.ParsingUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The counting without any UI or IDE dependency: applies the exclusions of its {@link ScanSettings} and parses files into a {@link ScanResult}.
+ * Used by the {@link Parser} of the tool window and by the command line scanner. <br>
+ * The settings are fixed per engine, a settings change creates a new one. Scans run on all cores with {@link ParallelWalker}, one at a time.
+ */
+public final class ScanEngine {
+    final Path root;
+    private final Set<String> separateTabs;
+    private final Set<String> excludedTypes;
+    private final Set<String> whiteListTypes;
+    private final Charset charset;
+    /**
+     * If huge files with a separate tab can be classified in parallel ranges, see {@link ParallelWalker#canSplit(Charset)}
+     */
+    private final boolean isCharsetSplittable;
+    private final boolean countMiscLines;
+    /**
+     * The excluded directories, regexes and ignore files
+     */
+    final ExclusionMatcher exclusions;
+    /**
+     * Remembers per extension if its files are text
+     */
+    private final BinarySniffer binarySniffer = new BinarySniffer();
+    /**
+     * Per file stats of a previous scan, unchanged files are taken from it. See {@link StatsCache}.
+     */
+    volatile StatsCache statsCache;
+    /**
+     * Progress of the running scan, read by the walker workers and the parser
+     */
+    volatile ScanProgress progress = new ScanProgress(0, null);
+    /**
+     * Timings of the running or last scan
+     */
+    volatile ScanMetrics metrics = new ScanMetrics();
+    /**
+     * Stats of the contents parsed in the running or last scan, see {@link ContentCache}
+     */
+    volatile ContentCache contentCache = new ContentCache(GitIndex.EMPTY);
+
+    /**
+     * The sets of the settings are used as they are, not copied
+     *
+     * @param root the project root, exclusions are relative to it. May be null if nothing is excluded.
+     */
+    public ScanEngine(Path root, ScanSettings settings) {
+        this.root = root;
+        separateTabs = settings.separateTabs;
+        excludedTypes = settings.excludedTypes;
+        whiteListTypes = settings.includedTypes;
+        charset = settings.charset;
+        isCharsetSplittable = ParallelWalker.canSplit(charset);
+        countMiscLines = settings.countMiscLines;
+        exclusions = root == null ? ExclusionMatcher.NONE
+                : new ExclusionMatcher(root, settings.excludedDirectories, settings.excludedRegexes, settings.useIgnoreFiles);
+    }
+
+    /**
+     * Walks the whole root on all cores
+     *
+     * @return the sorted result, see {@link ScanResult#sortEntries()}
+     */
+    public ScanResult scan() {
+        start(0, null);
+        long start = System.nanoTime();
+        var result = ParallelWalker.walk(this, root);
+        metrics.setScanNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Resets the progress and metrics for a new scan
+     *
+     * @param cancelRequested polled by the workers, see {@link ScanProgress}
+     */
+    void start(int expectedFiles, BooleanSupplier cancelRequested) {
+        progress = new ScanProgress(expectedFiles, cancelRequested);
+        metrics = new ScanMetrics();
+        contentCache = new ContentCache(GitIndex.read(root, contentCache.index));
+    }
+
+    public ScanProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return the timings of the running or last scan
+     */
+    public ScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the settings the counts depend on, cached stats are only valid for the same fingerprint
+     */
+    String fingerprint() {
+        return charset.name() + ';' + countMiscLines;
+    }
+
+    /**
+     * Directory part of the exclusion logic for single directories. {@link ParallelWalker} matches its entries with {@link #exclusions} directly.
+     *
+     * @return true if the whole subtree should be skipped
+     */
+    boolean isExcludedDirectory(Path path) {
+        return exclusions.isExcludedDirectory(path);
+    }
+
+    /**
+     * Checks a directory and all its parents up to the root, used for single paths outside a walk.
+     *
+     * @return true if the path is outside the root or inside an excluded directory
+     */
+    public boolean isExcludedPath(Path path) {
+        if (path == null || root == null || !path.startsWith(root)) return true;
+        for (Path dir = path; !dir.equals(root); dir = dir.getParent()) {
+            if (isExcludedDirectory(dir)) return true;
+        }
+        return isExcludedDirectory(root);
+    }
+
+    /**
+     * @return true if a change to the given file can change which paths are excluded, so the next scan needs to walk everything
+     */
+    public boolean isIgnoreRulesFile(Path path) {
+        return exclusions.usesIgnoreFiles() && path.getFileName() != null && IgnoreRules.precedence(path.getFileName().toString()) != -1;
+    }
+
+    /**
+     * File part of the exclusion logic for single files. Parses the file into the given result if it isn't excluded by regex, ignore file or file type.
+     */
+    void visitFile(Path path, BasicFileAttributes attrs, ScanResult result) {
+        if (exclusions.isExcludedFile(path)) {
+            return;
+        }
+        visitIncludedFile(new FileInfo(path, attrs), result);
+    }
+
+    /**
+     * Parses a file that already passed the regex and ignore file checks if it isn't excluded by file type. <br>
+     * Called concurrently by the workers of {@link ParallelWalker}, each with its own result.
+     */
+    void visitIncludedFile(FileInfo file, ScanResult result) {
+        String extension = ParsingUtil.getFileExtension(file.name);
+
+        if (isCountedType(extension)) {
+            if (result.sampleSize != 0) {
+                progress.fileParsed();
+                // Binary files have no lines to extrapolate, they are counted right away like in a full scan
+                if (binarySniffer.isBinary(file.path, extension)) {
+                    result.addFile(file.path, BinarySniffer.BUCKET, file.size, file.lastModified, 0);
+                } else {
+                    result.sample(file, extension);
+                }
+            } else {
+                parseFile(file, extension, result);
+            }
+        }
+    }
+
+    /**
+     * @return true if files with the given extension aren't excluded by the type settings
+     */
+    boolean isCountedType(String extension) {
+        return whiteListTypes.isEmpty() ? !extension.isEmpty() && !excludedTypes.contains(extension) : whiteListTypes.contains(extension);
+    }
+
+    boolean isSeparateTab(String extension) {
+        return separateTabs.contains(extension);
+    }
+
+    /**
+     * @return the code lines of a classified file, imports and includes only count if enabled
+     */
+    private int sourceCodeLines(LineClassifier classifier, int totalLines) {
+        int sourceCodeLines = totalLines - classifier.blankLines - classifier.commentLines - classifier.docLines;
+        if (!countMiscLines) sourceCodeLines -= classifier.miscLines;
+        return sourceCodeLines;
+    }
+
+    /**
+     * Parses a single file and adds its stats to the given result. Thread safe as long as each thread uses its own result.
+     */
+    public void parseFile(Path path, String extension, ScanResult result) {
+        try {
+            parseFile(new FileInfo(path, Files.readAttributes(path, BasicFileAttributes.class)), extension, result);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Same as {@link #parseFile(Path, String, ScanResult)} but with the metadata the walker already read, the file isn't looked up again.
+     * Unchanged files are taken from the {@link StatsCache} without reading them, binary files are only counted with their size.
+     */
+    void parseFile(FileInfo file, String extension, ScanResult result) {
+        progress.fileParsed();
+        long start = System.nanoTime();
+        long classificationNanos = readFile(file, extension, result);
+        metrics.fileParsed(file, extension, System.nanoTime() - start, classificationNanos);
+    }
+
+    /**
+     * Files with the same content as one parsed before in this scan are taken from the {@link ContentCache} without classifying them again.
+     *
+     * @return the time spent in the {@link LineClassifier}, 0 if the file wasn't classified
+     */
+    private long readFile(FileInfo file, String extension, ScanResult result) {
+        Path path = file.path;
+        long size = file.size;
+        long lastModified = file.lastModified;
+        boolean isSeparateTab = isSeparateTab(extension);
+
+        var cache = statsCache;
+        if (cache != null) {
+            var cached = cache.get(path, size, lastModified, isSeparateTab);
+            if (cached != null) {
+                result.add(path, cached);
+                return 0;
+            }
+        }
+
+        if (binarySniffer.isBinary(path, extension)) {
+            result.addFile(path, BinarySniffer.BUCKET, size, lastModified, 0);
+            return 0;
+        }
+
+        // Looking up contents only pays off for files that are classified, others are counted as fast as they are hashed
+        var contents = contentCache;
+        var id = contents.indexedId(file);
+        ContentCache.Lookup lookup = null;
+        if (id != null || isSeparateTab) {
+            FileRecord known;
+            if (id != null) {
+                known = contents.get(id, extension);
+            } else {
+                lookup = contents.lookup(file, extension);
+                known = lookup.known();
+            }
+            metrics.contentLookedUp(extension, known);
+            if (known != null) {
+                result.add(path, known.forFile(size, lastModified));
+                return 0;
+            }
+        }
+
+        FileRecord record;
+        long classificationNanos = 0;
+        if (isSeparateTab) {
+            long start = System.nanoTime();
+            var classifier = new LineClassifier(CommentGrammar.forExtension(extension));
+            int totalLines;
+            try {
+                if (size >= ParallelWalker.SPLIT_THRESHOLD && isCharsetSplittable) {
+                    ParallelWalker.classify(path, charset, classifier, progress);
+                } else {
+                    try (var reader = new InputStreamReader(Files.newInputStream(path), charset.newDecoder())) {
+                        classifier.classify(reader, progress);
+                    }
+                }
+                totalLines = classifier.totalLines;
+            } catch (IOException e) {
+                totalLines = classifier.totalLines;
+                try {
+                    totalLines = LineCounter.countLines(path);
+                } catch (IOException ignored) {
+                }
+            }
+            //setting separate tab entry data
+            record = new FileRecord(extension, size, lastModified, totalLines, sourceCodeLines(classifier, totalLines),
+                    classifier.commentLines, classifier.docLines, classifier.blankLines);
+            classificationNanos = System.nanoTime() - start;
+        } else {
+            int lines = 0;
+            try {
+                lines = size >= ParallelWalker.SPLIT_THRESHOLD ? ParallelWalker.countLines(path, progress) : LineCounter.countLines(path);
+            } catch (IOException ignored) {
+            }
+            record = new FileRecord(extension, size, lastModified, lines);
+        }
+
+        //setting over view and separate tab entry data
+        result.add(path, record);
+        if (id != null) {
+            contents.put(id, extension, record);
+        } else if (lookup != null) {
+            contents.parsed(lookup, record);
+        }
+        return classificationNanos;
+    }
+
+    /**
+     * Counts a file that is already in memory like {@link #readFile(FileInfo, String, ScanResult)}, also used for the blobs of a {@link HistoryScan}.
+     * Files with a separate tab are classified, others only get their '\n' counted. Doesn't check for binary content.
+     */
+    FileRecord countContent(byte[] data, String extension, long size, long lastModified, ScanProgress progress) {
+        if (!isSeparateTab(extension)) {
+            return new FileRecord(extension, size, lastModified, countNewlines(data));
+        }
+        var classifier = new LineClassifier(CommentGrammar.forExtension(extension));
+        int totalLines;
+        try (var reader = new InputStreamReader(new ByteArrayInputStream(data), charset.newDecoder())) {
+            classifier.classify(reader, progress);
+            totalLines = classifier.totalLines;
+        } catch (IOException e) {
+            totalLines = countNewlines(data);
+        }
+        return new FileRecord(extension, size, lastModified, totalLines, sourceCodeLines(classifier, totalLines),
+                classifier.commentLines, classifier.docLines, classifier.blankLines);
+    }
+
+    private static int countNewlines(byte[] data) {
+        return (int) LineCounter.countNewlines(ByteBuffer.wrap(data), 0, data.length);
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the time of a single update went: per {@link Phase}, per extension and the slowest files, and how many files had duplicate content. <br>
+ * Recorded by the walker workers and the parser while they work, so everything is thread safe and cheap:
+ * a few {@link System#nanoTime()} calls per directory and file and no lock unless a file is among the slowest.
+ * <p>
+ * The worker phases are summed over all threads and can add up to more than the wall time of the scan.
+ * The metrics of the last update are available with {@link Parser#getLastMetrics()} or {@link ScanEngine#getMetrics()} and shown in the diagnostics tab.
+ */
+public final class ScanMetrics {
+    public static final int SLOWEST_FILES = 20;
+
+    public enum Phase {
+        /**
+         * Listing directories and reading file attributes
+         */
+        WALK("Walk"),
+        /**
+         * Excluded directories, regexes and ignore files, including reading the ignore files
+         */
+        EXCLUSIONS("Exclusion matching"),
+        /**
+         * Per file time outside the classifier: opening, cache lookup, binary check and line counting
+         */
+        IO("I/O"),
+        /**
+         * Reading and decoding the files of separate tabs while classifying their lines
+         */
+        CLASSIFICATION("Classification"),
+        /**
+         * Filling the OverView and building the separate tabs, on the UI thread
+         */
+        TABLES("Table rebuild"),
+        /**
+         * Adding the time points of the update, on the UI thread
+         */
+        TIMELINE("Timeline persistence");
+
+        public final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Totals of all parsed files with one extension
+     */
+    public static final class ExtensionMetrics {
+        private final LongAdder files = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder duplicateFiles = new LongAdder();
+        private final LongAdder duplicateLines = new LongAdder();
+
+        public long getFiles() {
+            return files.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * @return the summed time of the files, over all threads
+         */
+        public long getNanos() {
+            return nanos.sum();
+        }
+
+        /**
+         * @return the files taken from the {@link ContentCache} because another file had the same content
+         */
+        public long getDuplicateFiles() {
+            return duplicateFiles.sum();
+        }
+
+        public long getDuplicateLines() {
+            return duplicateLines.sum();
+        }
+
+        public double getFilesPerSecond() {
+            long time = getNanos();
+            return time == 0 ? 0 : getFiles() * 1e9 / time;
+        }
+
+        public double getBytesPerSecond() {
+            long time = getNanos();
+            return time == 0 ? 0 : getBytes() * 1e9 / time;
+        }
+    }
+
+    public record SlowFile(Path path, String extension, long size, long nanos) {
+    }
+
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final ConcurrentHashMap<String, ExtensionMetrics> extensions = new ConcurrentHashMap<>();
+    /**
+     * Min heap of the slowest files, the fastest of them on top
+     */
+    private final PriorityQueue<SlowFile> slowest = new PriorityQueue<>(SLOWEST_FILES + 1, Comparator.comparingLong(SlowFile::nanos));
+    /**
+     * Time of the fastest file in {@link #slowest} once it's full, files below it are skipped without locking
+     */
+    private volatile long slowestThreshold;
+    private final LongAdder contentLookups = new LongAdder();
+    private final long startedAt = System.currentTimeMillis();
+    private volatile long scanNanos;
+
+    public ScanMetrics() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    void add(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Records a parsed file. The time outside the classifier counts as {@link Phase#IO}.
+     *
+     * @param classificationNanos the part of nanos spent in the {@link LineClassifier}
+     */
+    void fileParsed(FileInfo file, String extension, long nanos, long classificationNanos) {
+        add(Phase.IO, nanos - classificationNanos);
+        add(Phase.CLASSIFICATION, classificationNanos);
+        var metrics = extensions.computeIfAbsent(extension, k -> new ExtensionMetrics());
+        metrics.files.increment();
+        metrics.bytes.add(file.size);
+        metrics.nanos.add(nanos);
+        if (nanos > slowestThreshold) {
+            synchronized (slowest) {
+                slowest.add(new SlowFile(file.path, extension, file.size, nanos));
+                if (slowest.size() > SLOWEST_FILES) {
+                    slowest.poll();
+                    slowestThreshold = slowest.peek().nanos();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a lookup in the {@link ContentCache}. Files from the {@link StatsCache} are not looked up.
+     *
+     * @param reused the stats of a file with the same content or null if it's the first one
+     */
+    void contentLookedUp(String extension, FileRecord reused) {
+        contentLookups.increment();
+        if (reused != null) {
+            var metrics = extensions.computeIfAbsent(extension, k -> new ExtensionMetrics());
+            metrics.duplicateFiles.increment();
+            metrics.duplicateLines.add(reused.totalLines);
+        }
+    }
+
+    void setScanNanos(long nanos) {
+        scanNanos = nanos;
+    }
+
+    /**
+     * @return the epoch millis the update started at
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return the wall time of the walk and parsing, without the UI work
+     */
+    public long getScanNanos() {
+        return scanNanos;
+    }
+
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * @return the parsed files that were looked up by content, those with a known blob id or small enough to hash
+     */
+    public long getContentLookups() {
+        return contentLookups.sum();
+    }
+
+    public long getDuplicateFiles() {
+        long files = 0;
+        for (var metrics : extensions.values()) {
+            files += metrics.getDuplicateFiles();
+        }
+        return files;
+    }
+
+    public long getDuplicateLines() {
+        long lines = 0;
+        for (var metrics : extensions.values()) {
+            lines += metrics.getDuplicateLines();
+        }
+        return lines;
+    }
+
+    /**
+     * @return the share of looked up files that were duplicates, 0 without lookups
+     */
+    public double getDuplicateRate() {
+        long lookups = getContentLookups();
+        return lookups == 0 ? 0 : getDuplicateFiles() / (double) lookups;
+    }
+
+    /**
+     * @return the metrics per extension, sorted by extension
+     */
+    public Map<String, ExtensionMetrics> getExtensions() {
+        return new TreeMap<>(extensions);
+    }
+
+    /**
+     * @return up to {@link #SLOWEST_FILES} files, slowest first
+     */
+    public List<SlowFile> getSlowestFiles() {
+        List<SlowFile> files;
+        synchronized (slowest) {
+            files = new ArrayList<>(slowest);
+        }
+        files.sort(Comparator.comparingLong(SlowFile::nanos).reversed());
+        return files;
+    }
+
+    /**
+     * @return all values as a JSON object with times in milliseconds, e.g. to compare plugin versions
+     */
+    public String toJson() {
+        var sb = new StringBuilder(1024);
+        sb.append("{\"startedAt\":").append(startedAt).append(",\"scanMs\":").append(millis(scanNanos)).append(",\"phasesMs\":{");
+        for (var phase : Phase.values()) {
+            if (phase.ordinal() > 0) sb.append(',');
+            ScanReport.appendJson(sb, phase.name().toLowerCase(Locale.ROOT)).append(':').append(millis(getNanos(phase)));
+        }
+        sb.append("},\"contentLookups\":").append(getContentLookups())
+                .append(",\"duplicateFiles\":").append(getDuplicateFiles())
+                .append(",\"duplicateLines\":").append(getDuplicateLines());
+        sb.append(",\"extensions\":{");
+        boolean isFirst = true;
+        for (var pair : getExtensions().entrySet()) {
+            var metrics = pair.getValue();
+            if (!isFirst) sb.append(',');
+            isFirst = false;
+            ScanReport.appendJson(sb, pair.getKey()).append(":{\"files\":").append(metrics.getFiles())
+                    .append(",\"bytes\":").append(metrics.getBytes())
+                    .append(",\"ms\":").append(millis(metrics.getNanos()))
+                    .append(",\"filesPerSecond\":").append(Math.round(metrics.getFilesPerSecond()))
+                    .append(",\"bytesPerSecond\":").append(Math.round(metrics.getBytesPerSecond()))
+                    .append(",\"duplicateFiles\":").append(metrics.getDuplicateFiles())
+                    .append(",\"duplicateLines\":").append(metrics.getDuplicateLines()).append('}');
+        }
+        sb.append("},\"slowestFiles\":[");
+        isFirst = true;
+        for (var file : getSlowestFiles()) {
+            if (!isFirst) sb.append(',');
+            isFirst = false;
+            sb.append("{\"path\":");
+            ScanReport.appendJson(sb, file.path().toString()).append(",\"extension\":");
+            ScanReport.appendJson(sb, file.extension()).append(",\"size\":").append(file.size())
+                    .append(",\"ms\":").append(millis(file.nanos())).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Progress and cancellation of a single update, shared by all walker workers. <br>
+ * Cancellation is cooperative: the walker checks it per directory and file and the parser between chunks of a file,
+ * then the walk ends with a {@link CancellationException}.
+ */
+public final class ScanProgress {
+    private final LongAdder parsedFiles = new LongAdder();
+    private final int expectedFiles;
+    private final BooleanSupplier cancelRequested;
+    private volatile boolean isCancelled;
+
+    /**
+     * @param expectedFiles   estimate of how many files will be parsed e.g. from the previous run, 0 if unknown
+     * @param cancelRequested polled to detect a cancellation from outside e.g. a progress indicator, may be null
+     */
+    public ScanProgress(int expectedFiles, BooleanSupplier cancelRequested) {
+        this.expectedFiles = expectedFiles;
+        this.cancelRequested = cancelRequested;
+    }
+
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        if (!isCancelled && cancelRequested != null && cancelRequested.getAsBoolean()) {
+            isCancelled = true;
+        }
+        return isCancelled;
+    }
+
+    /**
+     * @throws CancellationException if the update was cancelled
+     */
+    void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    void fileParsed() {
+        parsedFiles.increment();
+    }
+
+    public int getParsedFiles() {
+        return parsedFiles.intValue();
+    }
+
+    /**
+     * @return the estimated done fraction, below 1 until the update finished, or -1 if there is no estimate
+     */
+    public double getFraction() {
+        if (expectedFiles <= 0) return -1;
+        return Math.min(0.99, getParsedFiles() / (double) expectedFiles);
+    }
+}
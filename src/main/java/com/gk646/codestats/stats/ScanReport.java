@@ -0,0 +1,199 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes a {@link ScanResult} as JSON or CSV: the OverView per extension and optionally one row per file, or the commits of a {@link HistoryScan}. <br>
+ * File paths are relative to the scanned root with '/' as separator, files are sorted by path so the output is stable across runs.
+ */
+public final class ScanReport {
+    private static final String CSV_HEADER = "kind,path,extension,files,size,lines,code,comment,doc,blank\n";
+    private static final String HISTORY_CSV_HEADER = "commit,timestamp,code,lines,message\n";
+
+    private ScanReport() {
+        //Utility class
+    }
+
+    /**
+     * {"root": ..., "overview": {extension: {...}}, "files": [{...}]}, the line kinds of a file are only set if its extension has a separate tab
+     */
+    public static void writeJson(ScanResult result, Path root, boolean withFiles, Writer out) throws IOException {
+        var sb = new StringBuilder(256);
+        sb.append("{\"root\":");
+        appendJson(sb, root.toString()).append(",\"overview\":{");
+        boolean isFirst = true;
+        for (var pair : new TreeMap<>(result.overView).entrySet()) {
+            var entry = pair.getValue();
+            if (!isFirst) sb.append(',');
+            isFirst = false;
+            appendJson(sb, pair.getKey()).append(":{\"files\":").append(entry.count)
+                    .append(",\"size\":").append(entry.sizeSum)
+                    .append(",\"sizeMin\":").append(entry.sizeMin)
+                    .append(",\"sizeMax\":").append(entry.sizeMax)
+                    .append(",\"lines\":").append(entry.lines)
+                    .append(",\"linesMin\":").append(entry.linesMin)
+                    .append(",\"linesMax\":").append(entry.linesMax)
+                    .append(",\"code\":").append(entry.linesCode).append('}');
+        }
+        sb.append('}');
+        if (withFiles) {
+            sb.append(",\"files\":[");
+            isFirst = true;
+            for (var pair : sortedFiles(result, root)) {
+                var record = pair.getValue();
+                sb.append(isFirst ? "\n{\"path\":" : ",\n{\"path\":");
+                isFirst = false;
+                appendJson(sb, pair.getKey()).append(",\"extension\":");
+                appendJson(sb, record.extension).append(",\"size\":").append(record.size).append(",\"lines\":").append(record.totalLines);
+                if (record.hasTabStats) {
+                    sb.append(",\"code\":").append(record.sourceCodeLines)
+                            .append(",\"comment\":").append(record.commentLines)
+                            .append(",\"doc\":").append(record.docLines)
+                            .append(",\"blank\":").append(record.blankLines);
+                }
+                sb.append('}');
+                // Flushed per file so huge results aren't built up in memory twice
+                out.append(sb);
+                sb.setLength(0);
+            }
+            sb.append(']');
+        }
+        out.append(sb.append("}\n"));
+    }
+
+    /**
+     * One table with a row of kind "overview" per extension followed by a row of kind "file" per file if enabled.
+     * Columns a row doesn't have are left empty.
+     */
+    public static void writeCsv(ScanResult result, Path root, boolean withFiles, Writer out) throws IOException {
+        var sb = new StringBuilder(CSV_HEADER);
+        for (var pair : new TreeMap<>(result.overView).entrySet()) {
+            var entry = pair.getValue();
+            sb.append("overview,,");
+            appendCsv(sb, pair.getKey()).append(',').append(entry.count).append(',').append(entry.sizeSum).append(',')
+                    .append(entry.lines).append(',').append(entry.linesCode).append(",,,\n");
+        }
+        out.append(sb);
+        if (!withFiles) return;
+        for (var pair : sortedFiles(result, root)) {
+            var record = pair.getValue();
+            sb.setLength(0);
+            sb.append("file,");
+            appendCsv(sb, pair.getKey()).append(',');
+            appendCsv(sb, record.extension).append(",1,").append(record.size).append(',').append(record.totalLines);
+            if (record.hasTabStats) {
+                sb.append(',').append(record.sourceCodeLines).append(',').append(record.commentLines)
+                        .append(',').append(record.docLines).append(',').append(record.blankLines).append('\n');
+            } else {
+                sb.append(",,,,\n");
+            }
+            out.append(sb);
+        }
+    }
+
+    /**
+     * {"root": ..., "commits": [{...}]} with one entry per commit of a {@link HistoryScan}, oldest first
+     */
+    public static void writeHistoryJson(List<HistoryScan.CommitStats> commits, Path root, Writer out) throws IOException {
+        var sb = new StringBuilder(256);
+        sb.append("{\"root\":");
+        appendJson(sb, root.toString()).append(",\"commits\":[");
+        boolean isFirst = true;
+        for (var commit : commits) {
+            sb.append(isFirst ? "\n{\"commit\":" : ",\n{\"commit\":");
+            isFirst = false;
+            appendJson(sb, commit.id()).append(",\"timestamp\":").append(commit.timestamp())
+                    .append(",\"code\":").append(commit.codeLines())
+                    .append(",\"lines\":").append(commit.totalLines())
+                    .append(",\"message\":");
+            appendJson(sb, commit.message()).append('}');
+        }
+        out.append(sb.append("]}\n"));
+    }
+
+    /**
+     * One row per commit of a {@link HistoryScan}, oldest first
+     */
+    public static void writeHistoryCsv(List<HistoryScan.CommitStats> commits, Writer out) throws IOException {
+        var sb = new StringBuilder(HISTORY_CSV_HEADER);
+        for (var commit : commits) {
+            sb.append(commit.id()).append(',').append(commit.timestamp()).append(',').append(commit.codeLines())
+                    .append(',').append(commit.totalLines()).append(',');
+            appendCsv(sb, commit.message()).append('\n');
+        }
+        out.append(sb);
+    }
+
+    private static List<Map.Entry<String, FileRecord>> sortedFiles(ScanResult result, Path root) {
+        var files = new ArrayList<Map.Entry<String, FileRecord>>(result.files.size());
+        for (int row = 0; row < result.files.size(); row++) {
+            var path = result.files.getPath(row);
+            path = path.startsWith(root) ? root.relativize(path) : path;
+            files.add(Map.entry(path.toString().replace('\\', '/'), result.files.getRecord(row)));
+        }
+        files.sort(Map.Entry.comparingByKey());
+        return files;
+    }
+
+    /**
+     * Appends the value as a quoted JSON string
+     */
+    static StringBuilder appendJson(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                default -> {
+                    if (c < ' ') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * Quotes the value only if needed, like RFC 4180
+     */
+    private static StringBuilder appendCsv(StringBuilder sb, String value) {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1 && value.indexOf('\r') == -1) {
+            return sb.append(value);
+        }
+        return sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
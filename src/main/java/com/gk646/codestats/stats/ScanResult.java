@@ -0,0 +1,258 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Accumulates the stats of a set of parsed files: the {@link OverViewEntry} per extension and the {@link StatTable} per separate tab. <br>
+ * Each worker of the {@link ParallelWalker} fills its own instance (see {@link PerWorker}), so parsing needs no locking.
+ * The partial results are then combined with {@link #merge(ScanResult)}.
+ */
+public final class ScanResult {
+    public final HashMap<String, OverViewEntry> overView = new HashMap<>(10);
+    public final HashMap<String, StatTable> tabs = new HashMap<>(6);
+    /**
+     * File names of all files of this result
+     */
+    private final NameTable names = new NameTable();
+    /**
+     * What each file contributed, used by {@link IncrementalScan} to replace single files
+     */
+    final FileTable files = new FileTable(names);
+    /**
+     * Files to read per extension in the estimate mode, 0 if every file is parsed
+     */
+    final int sampleSize;
+    /**
+     * The files to read per extension if sampling, see {@link Estimate}
+     */
+    final HashMap<String, FileSample> samples = new HashMap<>();
+
+    public ScanResult() {
+        this(0);
+    }
+
+    ScanResult(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Rebuilds the totals from the files of a previous result, call {@link #sortEntries()} afterward
+     *
+     * @param removed rows of the previous {@link #files} that are left out
+     */
+    static ScanResult of(ScanResult previous, BitSet removed) {
+        var result = new ScanResult();
+        result.files.addAll(previous.files, result.names.internAll(previous.names), removed);
+        for (int row = 0; row < result.files.size(); row++) {
+            result.count(row);
+        }
+        return result;
+    }
+
+    /**
+     * Adds a file that is only shown in the OverView tab
+     */
+    void addFile(Path path, String extension, long size, long lastModified, int totalLines) {
+        add(path, new FileRecord(extension, size, lastModified, totalLines));
+    }
+
+    /**
+     * Counts a file in the OverView without its lines and adds it to the sample of its extension
+     */
+    void sample(FileInfo file, String extension) {
+        overView.computeIfAbsent(extension, k -> new OverViewEntry()).addValues(file.size, 0, 0);
+        samples.computeIfAbsent(extension, k -> new FileSample(sampleSize)).offer(file);
+    }
+
+    /**
+     * @return the number of files counted so far, also those only sampled
+     */
+    int fileCount() {
+        int count = 0;
+        for (var entry : overView.values()) {
+            count += entry.count;
+        }
+        return count;
+    }
+
+    /**
+     * Adds a file to the OverView and if it has tab stats also to its separate tab
+     */
+    void add(Path path, FileRecord record) {
+        count(files.add(path, record));
+    }
+
+    /**
+     * Adds a row of the {@link #files} to the OverView and if it has tab stats also to its separate tab
+     */
+    private void count(int row) {
+        var extension = files.getExtension(row);
+        var overViewEntry = overView.computeIfAbsent(extension, k -> new OverViewEntry());
+        if (files.hasTabStats(row)) {
+            overViewEntry.addValues(files.getSize(row), files.get(row, StatTable.TOTAL), files.get(row, StatTable.SOURCE_CODE));
+            tabs.computeIfAbsent(extension, k -> new StatTable(files)).add(row);
+        } else {
+            overViewEntry.addValues(files.getSize(row), files.get(row, StatTable.TOTAL), 0);
+        }
+    }
+
+    /**
+     * Combines another result into this one. Overview entries are merged per extension and the file and tab rows are appended. <br>
+     * Like {@link OverViewEntry#merge(OverViewEntry)} this is associative, so results of subtrees, workers or past runs can be combined in any grouping.
+     * Both results are expected to cover different files. Call {@link #sortEntries()} afterward to get an order that doesn't depend on how the work was split.
+     *
+     * @param other the result to add, is not modified
+     * @return this result for chaining
+     */
+    public ScanResult merge(ScanResult other) {
+        for (var pair : other.overView.entrySet()) {
+            overView.computeIfAbsent(pair.getKey(), k -> new OverViewEntry()).merge(pair.getValue());
+        }
+        int firstFileRow = files.size();
+        files.addAll(other.files, names.internAll(other.names), null);
+        for (var pair : other.tabs.entrySet()) {
+            tabs.computeIfAbsent(pair.getKey(), k -> new StatTable(files)).addAll(pair.getValue(), firstFileRow);
+        }
+        for (var pair : other.samples.entrySet()) {
+            samples.computeIfAbsent(pair.getKey(), k -> new FileSample(sampleSize)).merge(pair.getValue());
+        }
+        return this;
+    }
+
+    /**
+     * @return a deep copy of the overview entries, that stays valid while this result is still being merged into
+     */
+    public HashMap<String, OverViewEntry> copyOverView() {
+        var copy = new HashMap<String, OverViewEntry>(overView.size() * 2);
+        for (var pair : overView.entrySet()) {
+            var entry = new OverViewEntry();
+            entry.merge(pair.getValue());
+            copy.put(pair.getKey(), entry);
+        }
+        return copy;
+    }
+
+    /**
+     * Sorts every tab by file name (and the counts for equal names) so the snapshot is deterministic
+     */
+    public void sortEntries() {
+        for (var table : tabs.values()) {
+            table.sort();
+        }
+    }
+
+    /**
+     * One {@link ScanResult} per thread for the duration of a single walk. <br>
+     * A map keyed by the thread is used instead of a {@link ThreadLocal}, so the results can't outlive the walk inside the pooled threads.
+     * <p>
+     * When streaming, workers hand off their result once it holds {@link #HANDOFF_FILES} files and start a new one.
+     * The thread that started the walk merges the handed off results with {@link #collect()} to show partial totals.
+     * <p>
+     * A worker that waits for a forked task may run other tasks in between, so the result is only handed off
+     * once the outermost user on the thread released it.
+     */
+    static final class PerWorker {
+        private static final int HANDOFF_FILES = 256;
+        private final Map<Thread, Slot> slots = new ConcurrentHashMap<>();
+        private final Queue<ScanResult> handedOff;
+        private final ScanResult collected;
+        private final int sampleSize;
+
+        private static final class Slot {
+            private ScanResult result;
+            private int users;
+
+            Slot(int sampleSize) {
+                result = new ScanResult(sampleSize);
+            }
+        }
+
+        PerWorker() {
+            this(false, 0);
+        }
+
+        /**
+         * @param sampleSize if not 0, files are only sampled, see {@link ScanResult#sample(FileInfo, String)}
+         */
+        PerWorker(boolean isStreaming, int sampleSize) {
+            handedOff = isStreaming ? new ConcurrentLinkedQueue<>() : null;
+            collected = new ScanResult(sampleSize);
+            this.sampleSize = sampleSize;
+        }
+
+        /**
+         * @return the result of the calling thread, to be used until {@link #release()}
+         */
+        ScanResult acquire() {
+            var slot = slots.computeIfAbsent(Thread.currentThread(), t -> new Slot(sampleSize));
+            slot.users++;
+            return slot.result;
+        }
+
+        /**
+         * Called by a worker after its files. Hands off its result if streaming, no outer task still uses it and it's large enough.
+         */
+        void release() {
+            var slot = slots.get(Thread.currentThread());
+            if (--slot.users == 0 && handedOff != null && slot.result.fileCount() >= HANDOFF_FILES) {
+                handedOff.add(slot.result);
+                slot.result = new ScanResult(sampleSize);
+            }
+        }
+
+        /**
+         * Merges the results handed off so far. Only called by the thread that started the walk.
+         *
+         * @return the partial total, unsorted and updated in place by the next call
+         */
+        ScanResult collect() {
+            ScanResult result;
+            while ((result = handedOff.poll()) != null) {
+                collected.merge(result);
+            }
+            return collected;
+        }
+
+        /**
+         * Only valid once all workers are done
+         */
+        ScanResult merge() {
+            var total = handedOff == null ? new ScanResult(sampleSize) : collect();
+            for (var slot : slots.values()) {
+                total.merge(slot.result);
+            }
+            total.sortEntries();
+            return total;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * What a {@link ScanEngine} counts and how. Plain values without any IDE dependency, filled from the persisted settings
+ * by the {@link Parser} or from the arguments of the command line scanner. <br>
+ * The defaults are the defaults of the plugin settings, only the excluded directories start empty.
+ */
+public final class ScanSettings {
+    public static final String DEFAULT_EXCLUDED_TYPES = "exe;wav;ttf;sql;tmp;dmp;ico;dat;svg;class;svn-base;svn-work;gif;png;jpg;mp3;jpeg;bmp;tga;tiff;ear;war;zip;jar;iml;iws;ipr;bz2;gz;pyc;rar;bak;swp;tmp;log;pdb;obj;ipch;dll";
+    public static final String DEFAULT_SEPARATE_TABS = "java;cpp;c;hpp;h;rs;css;html;js;php;py;cs;go;rb;swift;ts;kt;sql;pl;lua;groovy;asp;aspx;jsp;json;scss;less;sass;sh;bat;ps1;md;f;r;m;asm;ada;scala;dart;jsx;julia";
+
+    // Directory presets of the settings checkboxes, excluded directly below the root
+    public static final List<String> IDE_DIRECTORIES = List.of(".idea", ".vs", ".settings", ".project", ".classpath");
+    public static final List<String> NPM_DIRECTORIES = List.of("node_modules", ".docker");
+    public static final List<String> COMPILER_DIRECTORIES = List.of("out", "build", ".gradle", "target", "cmake-build-debug",
+            "cmake-build-release", "cmake-build-Release", "cmake-build-Debug", "dist", "bin", "obj");
+    public static final List<String> VCS_DIRECTORIES = List.of(".git", "gitignore", ".svn", ".hg");
+    public static final List<String> CACHE_DIRECTORIES = List.of(".cache", "tmp", "temp");
+    public static final List<String> PYTHON_DIRECTORIES = List.of("venv", "env", ".env");
+
+    /**
+     * Extensions (without dot) that get a separate tab with comment and code lines, all others only count lines
+     */
+    public Set<String> separateTabs = split(DEFAULT_SEPARATE_TABS);
+    public Set<String> excludedTypes = split(DEFAULT_EXCLUDED_TYPES);
+    /**
+     * If not empty, only these extensions are counted and {@link #excludedTypes} is ignored
+     */
+    public Set<String> includedTypes = new HashSet<>();
+    /**
+     * Absolute paths of directories that are skipped with everything below them
+     */
+    public Set<String> excludedDirectories = new HashSet<>();
+    /**
+     * Matched against the path relative to the root, files and directories
+     */
+    public List<Pattern> excludedRegexes = new ArrayList<>();
+    public Charset charset = StandardCharsets.UTF_8;
+    public boolean countMiscLines = false;
+    public boolean useIgnoreFiles = false;
+
+    /**
+     * @return the entries of a ';' separated list like in the settings
+     */
+    public static Set<String> split(String list) {
+        var set = new HashSet<String>(16, 1);
+        Collections.addAll(set, list.split(";"));
+        return set;
+    }
+
+    /**
+     * Excludes the directories with the given names directly below the root, e.g. one of the presets
+     */
+    public void excludeDirectories(Path root, List<String> names) {
+        for (var name : names) {
+            excludedDirectories.add(root + File.separator + name);
+        }
+    }
+}
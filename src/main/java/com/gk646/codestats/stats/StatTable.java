@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import com.gk646.codestats.util.IntSort;
+
+import java.util.Arrays;
+
+/**
+ * The files of one separate tab: row numbers into the {@link FileTable} of a {@link ScanResult}, which holds the counts by column and the name ids. <br>
+ * Compared to an object per file this needs no headers or pointers and the counts of a file are only stored once.
+ * Only the read methods are public, the table is filled by {@link ScanResult}.
+ */
+public final class StatTable {
+    public static final int TOTAL = 0;
+    public static final int SOURCE_CODE = 1;
+    public static final int COMMENT = 2;
+    public static final int DOC = 3;
+    public static final int BLANK = 4;
+    static final int METRIC_COUNT = 5;
+    private final FileTable files;
+    private int size;
+    private int[] rows = new int[16];
+
+    StatTable(FileTable files) {
+        this.files = files;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the file name including the filetype e.g. "EventHandler.java"
+     */
+    public String getName(int row) {
+        return files.getName(rows[row]);
+    }
+
+    /**
+     * @param metric one of {@link #TOTAL}, {@link #SOURCE_CODE}, {@link #COMMENT}, {@link #DOC} or {@link #BLANK}
+     */
+    public int get(int row, int metric) {
+        return files.get(rows[row], metric);
+    }
+
+    /**
+     * @return the sum of a metric over all files
+     */
+    public long sum(int metric) {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += files.get(rows[i], metric);
+        }
+        return sum;
+    }
+
+    /**
+     * Compares the names of two rows like {@link String#compareTo(String)}, without creating them
+     */
+    public int compareNames(int rowA, int rowB) {
+        return files.compareNames(rows[rowA], rows[rowB]);
+    }
+
+    /**
+     * @param fileRow the row of the file in the {@link FileTable}
+     */
+    void add(int fileRow) {
+        ensureCapacity(size + 1);
+        rows[size++] = fileRow;
+    }
+
+    /**
+     * Appends the rows of another table, after its files were appended to the {@link FileTable} of this one
+     *
+     * @param firstFileRow the row the first file of the other file table was appended at
+     */
+    void addAll(StatTable other, int firstFileRow) {
+        ensureCapacity(size + other.size);
+        for (int i = 0; i < other.size; i++) {
+            rows[size + i] = other.rows[i] + firstFileRow;
+        }
+        size += other.size;
+    }
+
+    /**
+     * Sorts the rows by name and then by the metrics, so the order doesn't depend on how the work was split
+     */
+    void sort() {
+        var order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        IntSort.sort(order, (rowA, rowB) -> {
+            int result = compareNames(rowA, rowB);
+            for (int metric = 0; result == 0 && metric < METRIC_COUNT; metric++) {
+                result = Integer.compare(get(rowA, metric), get(rowB, metric));
+            }
+            return result;
+        });
+
+        var sorted = new int[Math.max(16, size)];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = rows[order[i]];
+        }
+        rows = sorted;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= rows.length) return;
+        rows = Arrays.copyOf(rows, Math.max(capacity, rows.length + (rows.length >> 1)));
+    }
+
+    /**
+     * One row per line, for debugging and tests
+     */
+    @Override
+    public String toString() {
+        var builder = new StringBuilder(size * 64);
+        for (int i = 0; i < size; i++) {
+            builder.append(getName(i))
+                    .append(" total=").append(get(i, TOTAL))
+                    .append(" code=").append(get(i, SOURCE_CODE))
+                    .append(" comment=").append(get(i, COMMENT))
+                    .append(" doc=").append(get(i, DOC))
+                    .append(" blank=").append(get(i, BLANK))
+                    .append('\n');
+        }
+        return builder.toString();
+    }
+}
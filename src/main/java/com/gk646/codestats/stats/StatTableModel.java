@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import com.gk646.codestats.ui.TypedTableModel;
+
+/**
+ * Table model of a separate tab that reads the {@link StatTable} columns by row and column on demand. <br>
+ * Percentages are plain ints here, the renderer adds the '%'.
+ */
+public final class StatTableModel extends TypedTableModel {
+    public static final int NAME = 0;
+    public static final int SOURCE_CODE_PERCENT = 3;
+    public static final int BLANK_PERCENT = 7;
+    private static final String[] COLUMN_NAMES = {"Source File", "Total Lines", "Source Code Lines", "Source Code Lines [%]", "Comment Lines", "Documentation Lines", "Blank Lines", "Blank Lines [%]"};
+    private final StatTable table;
+
+    /**
+     * @param table not copied, so it must not change while shown
+     */
+    StatTableModel(StatTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public int getRowCount() {
+        return table.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (columnIndex == NAME) return table.getName(rowIndex);
+        return getInt(rowIndex, columnIndex);
+    }
+
+    @Override
+    public int compare(int rowA, int rowB, int column) {
+        if (column == NAME) return table.compareNames(rowA, rowB);
+        return Integer.compare(getInt(rowA, column), getInt(rowB, column));
+    }
+
+    private int getInt(int row, int column) {
+        return switch (column) {
+            case 1 -> table.get(row, StatTable.TOTAL);
+            case 2 -> table.get(row, StatTable.SOURCE_CODE);
+            case SOURCE_CODE_PERCENT -> percent(table.get(row, StatTable.SOURCE_CODE), table.get(row, StatTable.TOTAL));
+            case 4 -> table.get(row, StatTable.COMMENT);
+            case 5 -> table.get(row, StatTable.DOC);
+            case 6 -> table.get(row, StatTable.BLANK);
+            case BLANK_PERCENT -> percent(table.get(row, StatTable.BLANK), table.get(row, StatTable.TOTAL));
+            default -> throw new IndexOutOfBoundsException("Invalid column: " + column);
+        };
+    }
+
+    private static int percent(int lines, int totalLines) {
+        return (int) (lines * 100.0f / totalLines + 0.5);
+    }
+}
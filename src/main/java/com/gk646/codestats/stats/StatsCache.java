@@ -0,0 +1,198 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import com.gk646.codestats.util.ParsingUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Per file stats of the last project update, persisted next to the workspace file so reopening a project doesn't start from cold. <br>
+ * An entry is only reused if the size and last modified time still match, then the file isn't read at all.
+ * <p>
+ * File layout (big endian): magic, {@link #VERSION}, settings fingerprint, entry count, the entries and finally a CRC32 over all previous bytes.
+ * A file with a wrong magic, version, fingerprint or checksum is ignored as a whole.
+ */
+public final class StatsCache {
+    public static final String FILE_NAME = "codestats-cache.dat";
+    private static final int MAGIC = 0x43535443; // "CSTC"
+    /**
+     * Bump this whenever the parsing rules change, so old counts aren't reused
+     */
+    private static final int VERSION = 3;
+    private static final int MAX_PATH_LENGTH = 8192;
+    private static final byte HAS_TAB_STATS = 1;
+    /**
+     * The file was counted in the {@link BinarySniffer#BUCKET}, its own extension can't be told from the path
+     */
+    private static final byte IS_BINARY = 2;
+
+    private final String fingerprint;
+    private final FileTable files;
+
+    private StatsCache(String fingerprint, FileTable files) {
+        this.fingerprint = fingerprint;
+        this.files = files;
+    }
+
+    /**
+     * Wraps the files of a finished update. They are only read afterward.
+     */
+    static StatsCache of(String fingerprint, FileTable files) {
+        return new StatsCache(fingerprint, files);
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Called by all workers of a walk at the same time, see {@link FileTable#find(Path)}
+     *
+     * @param needsTabStats true if the file has a separate tab, then only records with {@link FileRecord#hasTabStats} match
+     * @return the cached record or null if the file changed or wasn't cached
+     */
+    FileRecord get(Path path, long size, long lastModified, boolean needsTabStats) {
+        int row = files.find(path);
+        if (row == -1 || files.getSize(row) != size || files.getLastModified(row) != lastModified) return null;
+        if (!files.hasTabStats(row)) {
+            return needsTabStats ? null : files.getRecord(row);
+        }
+        return needsTabStats ? files.getRecord(row) : files.getRecord(row).withoutTabStats();
+    }
+
+    /**
+     * @return the cache or null if the file is missing, corrupt, outdated or was written with different settings
+     */
+    static StatsCache load(Path file, Path root, String fingerprint) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return null;
+        }
+        if (bytes.length < Long.BYTES) return null;
+
+        var crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong()) return null;
+
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(fingerprint)) return null;
+
+            int count = in.readInt();
+            if (count < 0) return null;
+            var files = new FileTable(new NameTable());
+            for (int i = 0; i < count; i++) {
+                Path path = root.resolve(in.readUTF());
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                int totalLines = in.readInt();
+                byte flags = in.readByte();
+                var extension = (flags & IS_BINARY) != 0 ? BinarySniffer.BUCKET : ParsingUtil.getFileExtension(path.getFileName().toString());
+                if ((flags & HAS_TAB_STATS) != 0) {
+                    files.add(path, new FileRecord(extension, size, lastModified, totalLines, in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+                } else {
+                    files.add(path, new FileRecord(extension, size, lastModified, totalLines));
+                }
+            }
+            return new StatsCache(fingerprint, files);
+        } catch (IOException | RuntimeException e) {
+            return null; // Truncated or otherwise invalid content despite a matching checksum
+        }
+    }
+
+    /**
+     * Writes the records below root to a temporary file first and then replaces the old cache, so a crash can't leave a half written file.
+     */
+    void save(Path file, Path root) {
+        var bytes = new ByteArrayOutputStream(files.size() * 64 + 64);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(fingerprint);
+
+            var body = new ByteArrayOutputStream(files.size() * 64);
+            var bodyOut = new DataOutputStream(body);
+            int count = 0;
+            for (int row = 0; row < files.size(); row++) {
+                var path = files.getPath(row);
+                if (!path.startsWith(root)) continue;
+                var relativePath = root.relativize(path).toString().replace('\\', '/');
+                if (relativePath.length() > MAX_PATH_LENGTH) continue; // writeUTF is limited to 64kb
+
+                bodyOut.writeUTF(relativePath);
+                bodyOut.writeLong(files.getSize(row));
+                bodyOut.writeLong(files.getLastModified(row));
+                bodyOut.writeInt(files.get(row, StatTable.TOTAL));
+                if (files.hasTabStats(row)) {
+                    bodyOut.writeByte(HAS_TAB_STATS);
+                    bodyOut.writeInt(files.get(row, StatTable.SOURCE_CODE));
+                    bodyOut.writeInt(files.get(row, StatTable.COMMENT));
+                    bodyOut.writeInt(files.get(row, StatTable.DOC));
+                    bodyOut.writeInt(files.get(row, StatTable.BLANK));
+                } else {
+                    bodyOut.writeByte(files.getExtension(row).equals(BinarySniffer.BUCKET) ? IS_BINARY : 0);
+                }
+                count++;
+            }
+            bodyOut.flush();
+            out.writeInt(count);
+            body.writeTo(out);
+
+            var content = bytes.toByteArray();
+            var crc = new CRC32();
+            crc.update(content);
+
+            Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+            try (OutputStream fileOut = Files.newOutputStream(tmp)) {
+                fileOut.write(content);
+                fileOut.write(ByteBuffer.allocate(Long.BYTES).putLong(crc.getValue()).array());
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ignored) {
+            // The cache is only an optimization
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.ui;
+
+import com.gk646.codestats.stats.ScanMetrics;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.JPanel;
+import javax.swing.table.DefaultTableModel;
+import java.awt.Font;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+
+/**
+ * Shows the {@link ScanMetrics} of an update: time per phase, throughput and duplicates per extension and the slowest files.
+ * The tables are sortable by every column.
+ */
+public final class DiagnosticsPanel extends JPanel {
+
+    public DiagnosticsPanel(@NotNull ScanMetrics metrics) {
+        super(new GridBagLayout());
+        var gbc = new GridBagConstraints();
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.weightx = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = JBUI.insets(4);
+
+        var summary = new JBLabel(String.format("Scan took %.1f ms, worker phases are summed over all threads. %d of %d files had duplicate content (%.1f%%), %d lines",
+                millis(metrics.getScanNanos()), metrics.getDuplicateFiles(), metrics.getContentLookups(), metrics.getDuplicateRate() * 100, metrics.getDuplicateLines()));
+        summary.setFont(summary.getFont().deriveFont(Font.BOLD));
+        add(summary, gbc);
+
+        var phases = createModel("Phase", "Time (ms)");
+        for (var phase : ScanMetrics.Phase.values()) {
+            phases.addRow(new Object[]{phase.label, millis(metrics.getNanos(phase))});
+        }
+        addTable(phases, gbc, 0.2);
+
+        var extensions = createModel("Extension", "Files", "Size (kb)", "Time (ms)", "Files/s", "MB/s", "Duplicates", "Duplicate lines");
+        for (var pair : metrics.getExtensions().entrySet()) {
+            var value = pair.getValue();
+            extensions.addRow(new Object[]{pair.getKey(), value.getFiles(), value.getBytes() / 1000, millis(value.getNanos()),
+                    Math.round(value.getFilesPerSecond()), Math.round(value.getBytesPerSecond() / 1e5) / 10.0, value.getDuplicateFiles(), value.getDuplicateLines()});
+        }
+        addTable(extensions, gbc, 0.4);
+
+        var slowest = createModel("Slowest files", "Extension", "Size (kb)", "Time (ms)");
+        for (var file : metrics.getSlowestFiles()) {
+            slowest.addRow(new Object[]{file.path().toString(), file.extension(), file.size() / 1000, millis(file.nanos())});
+        }
+        addTable(slowest, gbc, 0.4);
+    }
+
+    private void addTable(DefaultTableModel model, GridBagConstraints gbc, double weight) {
+        var table = new JBTable(model);
+        table.setAutoCreateRowSorter(true);
+        table.getTableHeader().setReorderingAllowed(false);
+        gbc.gridy++;
+        gbc.weighty = weight;
+        gbc.fill = GridBagConstraints.BOTH;
+        add(new JBScrollPane(table), gbc);
+    }
+
+    /**
+     * Read-only, the column classes come from the first row so numbers sort as numbers
+     */
+    private static DefaultTableModel createModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public Class<?> getColumnClass(int columnIndex) {
+                return getRowCount() == 0 ? Object.class : getValueAt(0, columnIndex).getClass();
+            }
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e5) / 10.0;
+    }
+}
@@ -146,7 +146,7 @@ public final class LineChartPanel extends JPanel {
             if (x < minX) minX = x;
             if (x > maxX) maxX = x;
 
-            int y = p.getY();
+            int y = p.getMaxY();
             if (y > maxY) maxY = y;
         }
 
@@ -243,6 +243,12 @@ public final class LineChartPanel extends JPanel {
         g2d.setStroke(lineStroke);
 
         g2d.setColor(JBColor.ORANGE);
+        // Combined points show the range of their period as a bar
+        for (TimePoint point : points) {
+            if (!point.isRollup()) continue;
+            int x = (int) ((point.getX() - minX) * scaleX + PADDING_LEFT);
+            g2d.drawLine(x, (int) (getHeight() - (point.getMinY() * scaleY + PADDING_BOTTOM)), x, (int) (getHeight() - (point.getMaxY() * scaleY + PADDING_BOTTOM)));
+        }
         for (int i = 0; i < points.size() - 1; i++) {
             int x1 = (int) ((points.get(i).getX() - minX) * scaleX + PADDING_LEFT);
             int y1 = (int) (getHeight() - ((points.get(i).getY()) * scaleY + PADDING_BOTTOM));
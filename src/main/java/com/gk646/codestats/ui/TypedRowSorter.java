@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.ui;
+
+import com.gk646.codestats.util.IntSort;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sorts the rows of a {@link TypedTableModel} with its primitive {@link TypedTableModel#compare(int, int, int)}. <br>
+ * Rows are sorted as an int index array with {@link IntSort}, so no cell value is created or boxed while sorting.
+ * Clicking a header works like {@link javax.swing.table.TableRowSorter}: ascending first, then toggling, with up to {@link #MAX_SORT_KEYS} keys.
+ */
+public final class TypedRowSorter extends RowSorter<TypedTableModel> {
+    private static final int MAX_SORT_KEYS = 3;
+    private final TypedTableModel model;
+    private List<SortKey> sortKeys = List.of();
+    /**
+     * Null while unsorted
+     */
+    private int[] viewToModel;
+    private int[] modelToView;
+
+    public TypedRowSorter(@NotNull TypedTableModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public TypedTableModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        var keys = new ArrayList<>(sortKeys);
+        int index = 0;
+        while (index < keys.size() && keys.get(index).getColumn() != column) index++;
+
+        if (index == 0 && !keys.isEmpty()) {
+            var order = keys.get(0).getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+            keys.set(0, new SortKey(column, order));
+        } else {
+            if (index < keys.size()) keys.remove(index);
+            keys.add(0, new SortKey(column, SortOrder.ASCENDING));
+            if (keys.size() > MAX_SORT_KEYS) keys.remove(MAX_SORT_KEYS);
+        }
+        setSortKeys(keys);
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (viewToModel == null) {
+            if (index < 0 || index >= getModelRowCount()) throw new IndexOutOfBoundsException("Invalid index");
+            return index;
+        }
+        return viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (modelToView == null) {
+            if (index < 0 || index >= getModelRowCount()) throw new IndexOutOfBoundsException("Invalid index");
+            return index;
+        }
+        return modelToView[index];
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        var old = sortKeys;
+        sortKeys = keys == null ? List.of() : List.copyOf(keys);
+        if (!old.equals(sortKeys)) {
+            fireSortOrderChanged();
+            sort();
+        }
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        sortKeys = List.of();
+        viewToModel = null;
+        modelToView = null;
+    }
+
+    @Override
+    public void allRowsChanged() {
+        sort();
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        sort();
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        sort();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        sort();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        sort();
+    }
+
+    private void sort() {
+        var lastViewToModel = viewToModel;
+        var keys = new ArrayList<SortKey>(sortKeys.size());
+        for (var key : sortKeys) {
+            if (key.getSortOrder() != SortOrder.UNSORTED) keys.add(key);
+        }
+
+        if (keys.isEmpty()) {
+            viewToModel = null;
+            modelToView = null;
+        } else {
+            int rows = model.getRowCount();
+            var rowIndices = new int[rows];
+            for (int i = 0; i < rows; i++) rowIndices[i] = i;
+            IntSort.sort(rowIndices, (rowA, rowB) -> compare(rowA, rowB, keys));
+
+            viewToModel = rowIndices;
+            modelToView = new int[rows];
+            for (int i = 0; i < rows; i++) modelToView[rowIndices[i]] = i;
+        }
+        fireRowSorterChanged(lastViewToModel);
+    }
+
+    private int compare(int rowA, int rowB, List<SortKey> keys) {
+        for (var key : keys) {
+            int result = model.compare(rowA, rowB, key.getColumn());
+            if (result != 0) {
+                return key.getSortOrder() == SortOrder.ASCENDING ? result : -result;
+            }
+        }
+        return 0; // The sort is stable, so equal rows stay in model order
+    }
+}
@@ -22,38 +22,23 @@
  * SOFTWARE.
  */
 
-package com.gk646.codestats.stats;
+package com.gk646.codestats.ui;
 
-import com.gk646.codestats.settings.SettingsPanel;
+import javax.swing.table.AbstractTableModel;
 
 /**
- * Describes an entry into filetype tabs as specified by the {@link SettingsPanel#includedFileTypesField}
+ * A read-only table model that reads its values straight from the underlying stats by row and column,
+ * and can compare rows on primitive values for {@link TypedRowSorter} instead of boxing and parsing cell values.
  */
-public final class StatEntry {
+public abstract class TypedTableModel extends AbstractTableModel {
+
     /**
-     * File name including the filetype e.g. "EventHandler.java"
+     * Compares two model rows by the given column, like {@link java.util.Comparator#compare(Object, Object)}
      */
-    final String name;
-    int totalLines;
-    int sourceCodeLines;
-    int commentLines;
-    int blankLines;
-    int docLines;
-
-    StatEntry(String name) {
-        this.name = name;
-    }
+    public abstract int compare(int rowA, int rowB, int column);
 
     @Override
-    public String toString() {
-        return "StatEntry{" +
-                "name='" + name + '\'' +
-                ", totalLines=" + totalLines +
-                ", sourceCodeLines=" + sourceCodeLines +
-                ", commentLines=" + commentLines +
-                ", blankLines=" + blankLines +
-                ", docLines=" + docLines +
-                '}';
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return false;
     }
 }
-
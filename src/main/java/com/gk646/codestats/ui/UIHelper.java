@@ -25,6 +25,8 @@
 package com.gk646.codestats.ui;
 
 import com.gk646.codestats.CodeStatsWindow;
+import com.gk646.codestats.stats.OverViewTableModel;
+import com.gk646.codestats.stats.StatTableModel;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.actionSystem.ActionToolbar;
 import com.intellij.openapi.actionSystem.AnAction;
@@ -47,8 +49,6 @@ import javax.swing.JPanel;
 import javax.swing.JTable;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableCellRenderer;
-import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.Component;
 import java.awt.Font;
 import java.awt.GridBagConstraints;
@@ -57,9 +57,11 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.lang.reflect.Array;
 import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Utility class for UI elements
@@ -88,13 +90,23 @@ public final class UIHelper {
         };
     }
 
+    /**
+     * Renderer of the OverView table, also formats its raw values e.g. 12 to "12x" and 1234 to "1.234kb"
+     */
     @Contract(" -> new")
     public static @NotNull DefaultTableCellRenderer getIconRenderer() {
 
         return new DefaultTableCellRenderer() {
+            private final DecimalFormat sizeFormat = new DecimalFormat("#,###kb", new DecimalFormatSymbols(Locale.GERMAN));
+
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
                 JLabel label = (JLabel) super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                if (column == OverViewTableModel.COUNT) {
+                    label.setText(value + "x");
+                } else if (column >= OverViewTableModel.SIZE_SUM && column <= OverViewTableModel.SIZE_AVG) {
+                    label.setText(sizeFormat.format(value));
+                }
 
                 switch (column) {
                     case 0 -> label.setIcon(AllIcons.Actions.InlayRenameInNoCodeFiles);
@@ -113,46 +125,19 @@ public final class UIHelper {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
                 JLabel label = (JLabel) super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                if (column == 0) {
+                if (column == StatTableModel.NAME) {
                     label.setIcon(AllIcons.Actions.InlayRenameInNoCodeFiles);
                 } else {
                     label.setIcon(AllIcons.Toolwindows.ToolWindowMessages);
                 }
+                if (column == StatTableModel.SOURCE_CODE_PERCENT || column == StatTableModel.BLANK_PERCENT) {
+                    label.setText(value + "%"); // Formatted only here, the model keeps plain ints for sorting
+                }
                 return label;
             }
         };
     }
 
-    @Contract("_ -> param1")
-    public static @NotNull TableRowSorter<TableModel> getOverViewTableSorter(@NotNull TableRowSorter<TableModel> sorter) {
-        sorter.setComparator(1, Comparator.comparingInt(a -> Integer.parseInt(((String) a).replace("x", ""))));
-
-        sorter.setComparator(2, Comparator.comparingLong(a -> Long.parseLong(((String) a).replace("kb", "").replace(".", ""))));
-        sorter.setComparator(3, Comparator.comparingLong(a -> Long.parseLong(((String) a).replace("kb", "").replace(".", ""))));
-        sorter.setComparator(4, Comparator.comparingLong(a -> Long.parseLong(((String) a).replace("kb", "").replace(".", ""))));
-        sorter.setComparator(5, Comparator.comparingLong(a -> Long.parseLong(((String) a).replace("kb", "").replace(".", ""))));
-
-        sorter.setComparator(6, Comparator.comparingInt(a -> (Integer) a));
-        sorter.setComparator(7, Comparator.comparingInt(a -> (Integer) a));
-        sorter.setComparator(8, Comparator.comparingInt(a -> (Integer) a));
-        sorter.setComparator(9, Comparator.comparingInt(a -> (Integer) a));
-        sorter.setComparator(10, Comparator.comparingInt(a -> (Integer) a));
-        return sorter;
-    }
-
-    @Contract("_ -> param1")
-    public static @NotNull TableRowSorter<TableModel> getSeparateTabTableSorter(@NotNull TableRowSorter<TableModel> sorter) {
-        sorter.setComparator(1, Comparator.comparingInt(a -> (Integer) a));
-        sorter.setComparator(2, Comparator.comparingInt(a -> (Integer) a));
-        sorter.setComparator(4, Comparator.comparingInt(a -> (Integer) a));
-        sorter.setComparator(6, Comparator.comparingInt(a -> (Integer) a));
-        sorter.setComparator(5, Comparator.comparingInt(a -> (Integer) a));
-
-        sorter.setComparator(3, Comparator.comparingInt(a -> Integer.parseInt(((String) a).replace("%", ""))));
-        sorter.setComparator(7, Comparator.comparingInt(a -> Integer.parseInt(((String) a).replace("%", ""))));
-        return sorter;
-    }
-
     @Contract("_ -> param1")
     public static @NotNull GridBagConstraints setMainTableConstraint(@NotNull GridBagConstraints gbc) {
         gbc.gridx = 0;
@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.util;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Stable sorting of int arrays (usually row indices) with a primitive comparator, so nothing is boxed while sorting
+ */
+public final class IntSort {
+
+    private IntSort() {
+        //Utility class
+    }
+
+    /**
+     * Merge sort, equal values keep their order
+     *
+     * @param comparator compares two values like {@link java.util.Comparator#compare(Object, Object)}
+     */
+    public static void sort(int[] values, IntBinaryOperator comparator) {
+        if (values.length < 2) return;
+        mergeSort(values, new int[values.length], 0, values.length, comparator);
+    }
+
+    private static void mergeSort(int[] values, int[] buffer, int from, int to, IntBinaryOperator comparator) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(values, buffer, from, mid, comparator);
+        mergeSort(values, buffer, mid, to, comparator);
+        if (comparator.applyAsInt(values[mid - 1], values[mid]) <= 0) return; // Already in order
+
+        System.arraycopy(values, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && comparator.applyAsInt(buffer[left], buffer[right]) <= 0)) {
+                values[i] = buffer[left++];
+            } else {
+                values[i] = buffer[right++];
+            }
+        }
+    }
+}
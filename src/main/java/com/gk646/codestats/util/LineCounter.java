@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Counts '\n' bytes without decoding the file. <br>
+ * Files are read into a direct buffer that is reused per thread and scanned 8 bytes at a time with a SWAR (SIMD within a register) word trick instead of byte by byte.
+ * They aren't memory mapped: on Windows a mapping locks the file until the buffer is garbage collected, so it couldn't be saved or deleted meanwhile.
+ */
+public final class LineCounter {
+    private static final int BUFFER_SIZE = 64 << 10;
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder()));
+
+    private LineCounter() {
+        //Utility class
+    }
+
+    public static int countLines(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return (int) Math.min(countBuffered(channel), Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Counts the '\n' bytes of one part of a file with positional reads, so the parts of a large file can be counted in parallel on the same channel and summed up.
+     */
+    public static long countLines(FileChannel channel, long position, long length) throws IOException {
+        var buffer = BUFFER.get();
+        long lines = 0;
+        for (long end = position + length; position < end; ) {
+            buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+            int read = channel.read(buffer, position);
+            if (read == -1) break;
+            position += read;
+            lines += countNewlines(buffer, 0, buffer.position());
+        }
+        return lines;
+    }
+
+    static long countBuffered(FileChannel channel) throws IOException {
+        var buffer = BUFFER.get();
+        long lines = 0;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer);
+            if (read == -1) break;
+            lines += countNewlines(buffer, 0, buffer.position());
+        }
+        return lines;
+    }
+
+    /**
+     * Counts the '\n' bytes in [from, to) of the buffer. Works on 8 bytes per step:
+     * XOR with all-newline makes every newline byte zero, then the high bit of each zero byte is isolated without carries between bytes
+     * (the low 7 bits plus 0x7F can't overflow into the next byte) and all of them are counted at once.
+     */
+    public static long countNewlines(ByteBuffer buffer, int from, int to) {
+        long lines = 0;
+        int i = from;
+        // Four independent words per step so the CPU can overlap them
+        for (int end = to - 4 * Long.BYTES; i <= end; i += 4 * Long.BYTES) {
+            lines += Long.bitCount(newlineBits(buffer.getLong(i)))
+                    + Long.bitCount(newlineBits(buffer.getLong(i + Long.BYTES)))
+                    + Long.bitCount(newlineBits(buffer.getLong(i + 2 * Long.BYTES)))
+                    + Long.bitCount(newlineBits(buffer.getLong(i + 3 * Long.BYTES)));
+        }
+        for (int end = to - Long.BYTES; i <= end; i += Long.BYTES) {
+            lines += Long.bitCount(newlineBits(buffer.getLong(i)));
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) == '\n') lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * @return a word with only the high bit set of each byte that is '\n'
+     */
+    private static long newlineBits(long word) {
+        word ^= NEWLINES;
+        return ~(((word & LOW_7_BITS) + LOW_7_BITS) | word | LOW_7_BITS);
+    }
+}
@@ -26,12 +26,8 @@ package com.gk646.codestats.util;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.io.BufferedInputStream;
-import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 
 /**
  * Utility class for to help with parsing
@@ -48,33 +44,6 @@ public final class ParsingUtil {
         return (dotIndex == -1) ? "" : fileName.substring(dotIndex + 1);
     }
 
-    public static int parseLargeNonUTFFile(Path path) throws IOException {
-        int lines = 0;
-        BufferedInputStream bis = new BufferedInputStream(Files.newInputStream(path));
-        byte[] buffer = new byte[262144];
-        int bytesRead;
-        while ((bytesRead = bis.read(buffer)) != -1) {
-            for (int i = 0; i < bytesRead; i++) {
-                if (buffer[i] == 10) {
-                    lines++;
-                }
-            }
-        }
-        bis.close();
-        return lines;
-    }
-
-    public static int parseSmallNonUTFFile(Path path) throws IOException {
-        int lines = 0;
-        for (var b : Files.readAllBytes(path)) {
-            if (b == 10) {
-                lines++;
-            }
-        }
-        return lines;
-    }
-
-
     // Old java version compatability  ;(.
     public static Charset getCharsetFallback(String charsetName, Charset fallbackCharset) {
         try {
@@ -24,8 +24,21 @@
 
 package com.gk646.codestats.util;
 
-public final class BoolContainer {
-    public boolean multiLineCommentJava;
-    public boolean multiLineDocJava;
-    public boolean multiLineLIneDocPython;
+import com.gk646.codestats.CodeStatsWindow;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManagerListener;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes the stats cache that is still waiting for updates to settle before the project closes.
+ * See {@link com.gk646.codestats.stats.Parser#flushStatsCache()}.
+ */
+public final class ProjectCloseListener implements ProjectManagerListener {
+
+    @Override
+    public void projectClosing(@NotNull Project project) {
+        var parser = CodeStatsWindow.PARSER;
+        if (parser == null || project != CodeStatsWindow.project) return;
+        parser.flushStatsCache();
+    }
 }
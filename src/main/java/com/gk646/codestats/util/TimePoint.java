@@ -53,6 +53,18 @@ public final class TimePoint {
      * The {@link LocalDate} as string when created with {@link com.gk646.codestats.ui.LineChartPanel.TimePointMode#GENERIC} and up to 25 character of the commit message with {@link com.gk646.codestats.ui.LineChartPanel.TimePointMode#COMMIT}
      */
     public String info;
+    /**
+     * How many points a rollup of {@link TimelineRollup} combines, 0 or 1 for a single point. The fields below are only set for rollups.
+     */
+    public int count;
+    /**
+     * The timestamp of the first combined point, {@link #timestamp} and the line counts are those of the last one
+     */
+    public long firstTimestamp;
+    public int minLinesCode;
+    public int maxLinesCode;
+    public int minTotalLines;
+    public int maxTotalLines;
 
     /**
      * Empty constructor for the {@link com.intellij.openapi.components.PersistentStateComponent} interface
@@ -79,13 +91,38 @@ public final class TimePoint {
         }
     }
 
+    /**
+     * @return true if this point combines several points, see {@link TimelineRollup}
+     */
+    public boolean isRollup() {
+        return count > 1;
+    }
+
+    /**
+     * @return the lowest value of the combined points, the value itself for a single point
+     */
+    public int getMinY() {
+        if (!isRollup()) return getY();
+        return CodeStatsWindow.TIME_LINE.lineMode == LineChartPanel.LineCountMode.CODE_LINES ? minLinesCode : minTotalLines;
+    }
+
+    public int getMaxY() {
+        if (!isRollup()) return getY();
+        return CodeStatsWindow.TIME_LINE.lineMode == LineChartPanel.LineCountMode.CODE_LINES ? maxLinesCode : maxTotalLines;
+    }
+
     @Contract(pure = true)
     @Override
     public @NotNull String toString() {
+        String text;
         if (CodeStatsWindow.TIME_LINE.lineMode == LineChartPanel.LineCountMode.TOTAL_LINES) {
-            return info + " | Total Lines:" + totalLines;
+            text = info + " | Total Lines:" + totalLines;
         } else {
-            return info + " | Code Lines:" + linesCode;
+            text = info + " | Code Lines:" + linesCode;
+        }
+        if (isRollup()) {
+            text += " (" + getMinY() + " - " + getMaxY() + " over " + count + " points)";
         }
+        return text;
     }
 }
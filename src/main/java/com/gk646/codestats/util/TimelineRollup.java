@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.util;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps years of timeline in a bounded number of points: recent points stay as they are, older ones are combined
+ * into one point per day, week and month as they age. <br>
+ * A combined point keeps the line counts and info of the last point in its period and the min and max of all of them, see {@link TimePoint#isRollup()}.
+ * With the default tiers the first two years take a few hundred points and each further year 12.
+ */
+public final class TimelineRollup {
+    /**
+     * Points up to this age stay as they are
+     */
+    static final long RAW_DAYS = 14;
+    static final long DAILY_DAYS = 90;
+    static final long WEEKLY_DAYS = 730;
+    /**
+     * Only this many of the newest points stay as they are, older recent ones are combined per day
+     */
+    static final int MAX_RAW_POINTS = 500;
+    private static final long DAY_MS = TimePoint.MILLISEC_PER_DAY;
+
+    private enum Tier {RAW, DAILY, WEEKLY, MONTHLY}
+
+    private TimelineRollup() {
+        //Utility class
+    }
+
+    /**
+     * Sorts the points by time and combines those old enough in place. Already combined points are combined further as they age,
+     * so compacting again changes nothing until time passes.
+     *
+     * @param now the current time in milliseconds, ages are relative to it
+     */
+    public static void compact(List<TimePoint> points, long now) {
+        points.sort(Comparator.comparingLong(point -> point.timestamp));
+        var zone = ZoneId.systemDefault();
+        var compacted = new ArrayList<TimePoint>(points.size());
+        int firstRaw = Math.max(0, points.size() - MAX_RAW_POINTS);
+        TimePoint bucket = null;
+        LocalDate bucketStart = null;
+        Tier bucketTier = null;
+        for (int i = 0; i < points.size(); i++) {
+            var point = points.get(i);
+            var tier = tierOf(now - point.timestamp);
+            if (tier == Tier.RAW && i < firstRaw) tier = Tier.DAILY;
+            if (tier == Tier.RAW) {
+                if (bucket != null) compacted.add(bucket);
+                bucket = null;
+                compacted.add(point);
+                continue;
+            }
+
+            var date = Instant.ofEpochMilli(point.timestamp).atZone(zone).toLocalDate();
+            var start = switch (tier) {
+                case WEEKLY -> date.with(DayOfWeek.MONDAY);
+                case MONTHLY -> date.withDayOfMonth(1);
+                default -> date;
+            };
+            if (bucket != null && tier == bucketTier && start.equals(bucketStart)) {
+                bucket = combine(bucket, point);
+            } else {
+                if (bucket != null) compacted.add(bucket);
+                bucket = point;
+                bucketStart = start;
+                bucketTier = tier;
+            }
+        }
+        if (bucket != null) compacted.add(bucket);
+        points.clear();
+        points.addAll(compacted);
+    }
+
+    private static Tier tierOf(long age) {
+        if (age < RAW_DAYS * DAY_MS) return Tier.RAW;
+        if (age < DAILY_DAYS * DAY_MS) return Tier.DAILY;
+        if (age < WEEKLY_DAYS * DAY_MS) return Tier.WEEKLY;
+        return Tier.MONTHLY;
+    }
+
+    /**
+     * @param earlier a single point or a rollup, not modified
+     * @param later   a point or rollup after it
+     * @return a new rollup of both with the values of the later one
+     */
+    static TimePoint combine(TimePoint earlier, TimePoint later) {
+        var rollup = new TimePoint(later.timestamp, later.linesCode, later.totalLines, later.info);
+        rollup.count = Math.max(1, earlier.count) + Math.max(1, later.count);
+        rollup.firstTimestamp = earlier.isRollup() ? earlier.firstTimestamp : earlier.timestamp;
+        rollup.minLinesCode = Math.min(minLinesCode(earlier), minLinesCode(later));
+        rollup.maxLinesCode = Math.max(maxLinesCode(earlier), maxLinesCode(later));
+        rollup.minTotalLines = Math.min(minTotalLines(earlier), minTotalLines(later));
+        rollup.maxTotalLines = Math.max(maxTotalLines(earlier), maxTotalLines(later));
+        return rollup;
+    }
+
+    /**
+     * @return true if the time lies in the period of a rollup, a point there was already counted
+     */
+    public static boolean isCovered(List<TimePoint> points, long timestamp) {
+        for (var point : points) {
+            if (point.isRollup() && timestamp >= point.firstTimestamp && timestamp <= point.timestamp) return true;
+        }
+        return false;
+    }
+
+    private static int minLinesCode(TimePoint point) {
+        return point.isRollup() ? point.minLinesCode : point.linesCode;
+    }
+
+    private static int maxLinesCode(TimePoint point) {
+        return point.isRollup() ? point.maxLinesCode : point.linesCode;
+    }
+
+    private static int minTotalLines(TimePoint point) {
+        return point.isRollup() ? point.minTotalLines : point.totalLines;
+    }
+
+    private static int maxTotalLines(TimePoint point) {
+        return point.isRollup() ? point.maxTotalLines : point.totalLines;
+    }
+}
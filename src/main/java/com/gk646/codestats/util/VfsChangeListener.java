@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.util;
+
+import com.gk646.codestats.CodeStatsWindow;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Records which files changed since the last update, so the next refresh only has to re-read those.
+ * See {@link com.gk646.codestats.stats.PendingChanges}.
+ */
+public final class VfsChangeListener implements BulkFileListener {
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        var parser = CodeStatsWindow.PARSER;
+        if (parser == null || parser.projectPath == null) return;
+
+        for (var event : events) {
+            if (!(event.getFileSystem() instanceof LocalFileSystem)) continue; // e.g. contents of jars
+
+            if (event instanceof VFileMoveEvent move) {
+                markChanged(move.getOldPath());
+                markChanged(move.getNewPath());
+            } else if (event instanceof VFilePropertyChangeEvent property) {
+                if (property.isRename()) {
+                    markChanged(property.getOldPath());
+                    markChanged(property.getNewPath());
+                }
+            } else if (event instanceof VFileContentChangeEvent || event instanceof VFileCreateEvent
+                    || event instanceof VFileDeleteEvent || event instanceof VFileCopyEvent) {
+                markChanged(event.getPath());
+            }
+        }
+    }
+
+    private static void markChanged(String vfsPath) {
+        var parser = CodeStatsWindow.PARSER;
+        Path path;
+        try {
+            path = Path.of(vfsPath);
+        } catch (InvalidPathException e) {
+            return;
+        }
+        // Changes in excluded directories (like build output) don't matter
+        if (parser.isExcludedPath(path)) return;
+        if (parser.isIgnoreRulesFile(path)) {
+            parser.pendingChanges.invalidate(); // Can change what's excluded anywhere below
+            return;
+        }
+        parser.pendingChanges.add(path);
+    }
+}
@@ -23,19 +23,19 @@
  */
 
 import com.gk646.codestats.stats.Parser;
+import com.gk646.codestats.stats.ScanResult;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
 
 public class ParserTest {
 
     public static void main(String[] args) {
         Parser p = new Parser();
         Parser.separateTabs.add(".txt");
-        Parser.tabs.put(".txt", new ArrayList<>());
+        var result = new ScanResult();
 
-        p.parseFile(Path.of("src/test/resources/test.txt"), ".txt");
+        p.parseFile(Path.of("src/test/resources/test.txt"), ".txt", result);
 
-        System.out.println(Parser.tabs.get(".txt").get(0).toString());
+        System.out.print(result.tabs.get(".txt"));
     }
 }
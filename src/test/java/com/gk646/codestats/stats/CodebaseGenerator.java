@@ -0,0 +1,420 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Builds a synthetic codebase from a seed and knows its stats in advance, to test the scan at scale for speed and correctness. <br>
+ * Every directory is generated from its own seed, so the same {@link Config} gives the same tree no matter how many threads write it.
+ * Each line is written as one kind (code, blank, comment, doc or misc) that matches the {@link CommentGrammar} of its extension,
+ * so the expected tab values are known without parsing.
+ * <p>
+ * Run the main method to generate a tree, scan it with a {@link ScanEngine} and compare the result with the expected totals:
+ * {@code CodebaseGenerator [files] [seed] [directory]}. Without a directory a temporary one is used and deleted afterward.
+ */
+public final class CodebaseGenerator {
+    /**
+     * Comment syntax of the generated files, per extension
+     */
+    private enum Style {
+        JAVA("//", "/*", "*/", "/**", " * ", "*/", "import java.util.%s;", "package com.example.%s;"),
+        CPP("//", "/*", "*/", "/**", " * ", "*/", "#include <%s>", "#include \"%s.h\""),
+        JS("//", "/*", "*/", "/**", " * ", "*/", "import %s from './module';", "import { %s } from 'library';"),
+        PY("#", null, null, "\"\"\"", "", "\"\"\"", "import %s", "from package import %s"),
+        /**
+         * Prose without any markers, for text files and grammars without line comments
+         */
+        PLAIN(null, null, null, null, null, null);
+
+        final String lineComment;
+        final String blockOpen;
+        final String blockClose;
+        final String docOpen;
+        final String docLine;
+        final String docClose;
+        final String[] misc;
+
+        Style(String lineComment, String blockOpen, String blockClose, String docOpen, String docLine, String docClose, String... misc) {
+            this.lineComment = lineComment;
+            this.blockOpen = blockOpen;
+            this.blockClose = blockClose;
+            this.docOpen = docOpen;
+            this.docLine = docLine;
+            this.docClose = docClose;
+            this.misc = misc;
+        }
+
+        static Style of(String extension) {
+            return switch (extension) {
+                case "java", "kt", "scala", "groovy", "go" -> JAVA;
+                case "cpp", "hpp", "cc", "c", "h" -> CPP;
+                case "js", "jsx", "ts", "tsx" -> JS;
+                case "py" -> PY;
+                default -> PLAIN;
+            };
+        }
+    }
+
+    /**
+     * What to generate. The defaults give a mixed project of 10.000 files with about half of the lines in comments.
+     */
+    public static final class Config {
+        public long seed = 42;
+        public int files = 10_000;
+        public int filesPerDirectory = 25;
+        /**
+         * Directories are nested up to this depth below the root
+         */
+        public int maxDepth = 6;
+        /**
+         * Relative weight per extension, in a fixed order
+         */
+        public LinkedHashMap<String, Integer> extensions = new LinkedHashMap<>();
+
+        public Config() {
+            // Insertion order matters, it's part of what the seed picks from
+            extensions.put("java", 30);
+            extensions.put("py", 15);
+            extensions.put("cpp", 10);
+            extensions.put("h", 5);
+            extensions.put("js", 10);
+            extensions.put("md", 5);
+            extensions.put("txt", 5);
+            extensions.put("json", 5);
+            extensions.put("xml", 5);
+        }
+        /**
+         * Chance that the next line starts a comment or doc comment of 1 to 6 lines. The rest is code, blank and a few misc lines at the top.
+         */
+        public double commentDensity = 0.25;
+        /**
+         * Created at the root and filled with files that the default settings exclude, not part of the expected totals
+         */
+        public List<String> excludedDirectories = List.of(".git", "node_modules", "build");
+        public int filesPerExcludedDirectory = 200;
+    }
+
+    /**
+     * The expected values of all files with one extension
+     */
+    public static final class Totals {
+        public int files;
+        public long size;
+        public long sizeMin = Long.MAX_VALUE;
+        public long sizeMax;
+        public long lines;
+        public int linesMin = Integer.MAX_VALUE;
+        public int linesMax;
+        public long code;
+        public long comment;
+        public long doc;
+        public long blank;
+        public long misc;
+
+        void add(long fileSize, int fileLines, int fileComment, int fileDoc, int fileBlank, int fileMisc) {
+            files++;
+            size += fileSize;
+            sizeMin = Math.min(sizeMin, fileSize);
+            sizeMax = Math.max(sizeMax, fileSize);
+            lines += fileLines;
+            linesMin = Math.min(linesMin, fileLines);
+            linesMax = Math.max(linesMax, fileLines);
+            comment += fileComment;
+            doc += fileDoc;
+            blank += fileBlank;
+            misc += fileMisc;
+            code += fileLines - fileComment - fileDoc - fileBlank - fileMisc;
+        }
+
+        void merge(Totals other) {
+            files += other.files;
+            size += other.size;
+            sizeMin = Math.min(sizeMin, other.sizeMin);
+            sizeMax = Math.max(sizeMax, other.sizeMax);
+            lines += other.lines;
+            linesMin = Math.min(linesMin, other.linesMin);
+            linesMax = Math.max(linesMax, other.linesMax);
+            code += other.code;
+            comment += other.comment;
+            doc += other.doc;
+            blank += other.blank;
+            misc += other.misc;
+        }
+
+        /**
+         * @return the source code lines as the parser counts them for a separate tab
+         */
+        public long sourceCodeLines(boolean countMiscLines) {
+            return countMiscLines ? code + misc : code;
+        }
+    }
+
+    private static final String[] WORDS = {"value", "count", "result", "buffer", "index", "parser", "entry", "node", "list", "map",
+            "update", "compute", "size", "total", "line", "file", "path", "name", "state", "config", "handler", "request", "cache", "event"};
+
+    private CodebaseGenerator() {
+        //Utility class
+    }
+
+    /**
+     * Writes the tree into root, which may not exist yet. Directories are generated in parallel.
+     *
+     * @return the expected totals per extension
+     */
+    public static Map<String, Totals> generate(Path root, Config config) throws IOException {
+        var extensions = config.extensions.keySet().toArray(String[]::new);
+        var weights = new int[extensions.length];
+        int weightSum = 0;
+        for (int i = 0; i < extensions.length; i++) {
+            weightSum += config.extensions.get(extensions[i]);
+            weights[i] = weightSum;
+        }
+        int directories = (config.files + config.filesPerDirectory - 1) / config.filesPerDirectory;
+        int totalWeight = weightSum;
+        try {
+            for (int i = 0; i < config.excludedDirectories.size(); i++) {
+                var dir = Files.createDirectories(root.resolve(config.excludedDirectories.get(i)));
+                var random = new SplittableRandom(config.seed ^ -(i + 1L));
+                for (int j = 0; j < config.filesPerExcludedDirectory; j++) {
+                    String extension = pick(extensions, weights, totalWeight, random);
+                    writeFile(dir.resolve("Excluded" + j + "." + extension), extension, config, random, new HashMap<>());
+                }
+            }
+            return IntStream.range(0, directories).parallel().mapToObj(i -> {
+                var random = new SplittableRandom(config.seed * 0x9E3779B97F4A7C15L + i);
+                var totals = new HashMap<String, Totals>();
+                try {
+                    var dir = Files.createDirectories(root.resolve(directoryPath(i, config, random)));
+                    int end = Math.min(config.files, (i + 1) * config.filesPerDirectory);
+                    for (int file = i * config.filesPerDirectory; file < end; file++) {
+                        String extension = pick(extensions, weights, totalWeight, random);
+                        writeFile(dir.resolve("File" + file + "." + extension), extension, config, random, totals);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return totals;
+            }).reduce(new HashMap<>(), CodebaseGenerator::merge);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static HashMap<String, Totals> merge(HashMap<String, Totals> a, HashMap<String, Totals> b) {
+        var merged = new HashMap<String, Totals>();
+        for (var map : List.of(a, b)) {
+            for (var pair : map.entrySet()) {
+                merged.computeIfAbsent(pair.getKey(), k -> new Totals()).merge(pair.getValue());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Packages of random depth, the last directory is unique per index
+     */
+    private static String directoryPath(int index, Config config, SplittableRandom random) {
+        var sb = new StringBuilder();
+        for (int depth = random.nextInt(config.maxDepth); depth > 0; depth--) {
+            sb.append("pkg").append(random.nextInt(8)).append('/');
+        }
+        return sb.append("dir").append(index).toString();
+    }
+
+    private static String pick(String[] extensions, int[] weights, int totalWeight, SplittableRandom random) {
+        int value = random.nextInt(totalWeight);
+        for (int i = 0; ; i++) {
+            if (value < weights[i]) return extensions[i];
+        }
+    }
+
+    private static void writeFile(Path path, String extension, Config config, SplittableRandom random, Map<String, Totals> totals) throws IOException {
+        var style = Style.of(extension);
+        var sb = new StringBuilder(4096);
+        // Mostly small files and a few large ones, like in real projects
+        int targetLines = (int) Math.min(20_000, 10 + Math.exp(3.5 + 1.2 * random.nextGaussian()));
+        double commentChance = style == Style.PLAIN ? 0 : config.commentDensity;
+        int lines = 0, comment = 0, doc = 0, blank = 0, misc = 0;
+
+        if (style != Style.PLAIN) {
+            for (int i = random.nextInt(6); i > 0 && lines < targetLines; i--, lines++, misc++) {
+                sb.append(String.format(style.misc[random.nextInt(style.misc.length)], word(random))).append('\n');
+            }
+        }
+        while (lines < targetLines) {
+            double kind = random.nextDouble();
+            if (kind < commentChance) {
+                int block = 1 + random.nextInt(6);
+                double commentKind = random.nextDouble();
+                if (commentKind < 0.4) { // Doc comment
+                    if (block == 1) {
+                        sb.append("    ").append(style.docOpen).append(sentence(random)).append(style.docClose).append('\n');
+                    } else {
+                        sb.append("    ").append(style.docOpen).append('\n');
+                        for (int i = 2; i < block; i++) {
+                            sb.append("    ").append(style.docLine).append(sentence(random)).append('\n');
+                        }
+                        sb.append("    ").append(style.docLine.isEmpty() ? "" : " ").append(style.docClose).append('\n');
+                    }
+                    doc += block;
+                } else if (commentKind < 0.6 && style.blockOpen != null) { // Block comment
+                    if (block == 1) {
+                        sb.append("    ").append(style.blockOpen).append(' ').append(sentence(random)).append(' ').append(style.blockClose).append('\n');
+                    } else {
+                        sb.append("    ").append(style.blockOpen).append(' ').append(sentence(random)).append('\n');
+                        for (int i = 2; i < block; i++) {
+                            sb.append("       ").append(sentence(random)).append('\n');
+                        }
+                        sb.append("    ").append(style.blockClose).append('\n');
+                    }
+                    comment += block;
+                } else { // Line comments
+                    for (int i = 0; i < block; i++) {
+                        sb.append("    ").append(style.lineComment).append(' ').append(sentence(random)).append('\n');
+                    }
+                    comment += block;
+                }
+                lines += block;
+            } else if (kind < commentChance + 0.12) {
+                sb.append('\n');
+                blank++;
+                lines++;
+            } else {
+                appendCode(sb, style, random);
+                lines++;
+            }
+        }
+
+        var bytes = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        Files.write(path, bytes);
+        totals.computeIfAbsent(extension, k -> new Totals()).add(bytes.length, lines, comment, doc, blank, misc);
+    }
+
+    /**
+     * A code line, sometimes with comment markers inside a string or a trailing comment, which don't change its kind
+     */
+    private static void appendCode(StringBuilder sb, Style style, SplittableRandom random) {
+        if (style == Style.PLAIN) {
+            String first = word(random);
+            sb.append(Character.toUpperCase(first.charAt(0))).append(first, 1, first.length()).append(' ').append(sentence(random)).append('\n');
+            return;
+        }
+        String end = style == Style.PY ? "" : ";";
+        sb.append("        ").append(word(random)).append(" = ").append(word(random)).append('(');
+        for (int i = random.nextInt(4); i > 0; i--) {
+            sb.append(word(random)).append(i > 1 ? ", " : "");
+        }
+        sb.append(')').append(end);
+        int extra = random.nextInt(10);
+        if (extra == 0) {
+            sb.append(' ').append(style.lineComment).append(' ').append(word(random));
+        } else if (extra == 1) {
+            sb.append(" + \"").append(style.lineComment).append(style.blockOpen != null ? style.blockOpen : "").append(word(random)).append('"');
+        }
+        sb.append('\n');
+    }
+
+    private static String sentence(SplittableRandom random) {
+        var sb = new StringBuilder();
+        for (int i = 3 + random.nextInt(8); i > 0; i--) {
+            sb.append(word(random)).append(i > 1 ? " " : ".");
+        }
+        return sb.toString();
+    }
+
+    private static String word(SplittableRandom random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    public static void main(String[] args) throws IOException {
+        var config = new Config();
+        if (args.length > 0) config.files = Integer.parseInt(args[0]);
+        if (args.length > 1) config.seed = Long.parseLong(args[1]);
+        boolean isTemporary = args.length < 3;
+        var root = isTemporary ? Files.createTempDirectory("codestats-generated") : Path.of(args[2]).toAbsolutePath();
+
+        long start = System.nanoTime();
+        var expected = generate(root, config);
+        System.out.printf("Generated %d files in %d ms%n", config.files, (System.nanoTime() - start) / 1_000_000);
+
+        var tabs = Set.of("java", "py", "cpp", "h", "js", "md", "json");
+        var settings = new ScanSettings();
+        settings.separateTabs = new HashSet<>(tabs);
+        settings.excludeDirectories(root, config.excludedDirectories);
+        var engine = new ScanEngine(root, settings);
+
+        start = System.nanoTime();
+        var result = engine.scan();
+        System.out.printf("Walked in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+        int mismatches = 0;
+        if (!result.overView.keySet().equals(expected.keySet())) {
+            System.out.println("Extensions differ: " + result.overView.keySet() + " expected " + expected.keySet());
+            mismatches++;
+        }
+        for (var pair : expected.entrySet()) {
+            var totals = pair.getValue();
+            var entry = result.overView.get(pair.getKey());
+            boolean isTab = tabs.contains(pair.getKey());
+            long code = isTab ? totals.sourceCodeLines(false) : 0;
+            if (entry == null || entry.count != totals.files || entry.sizeSum != totals.size || entry.sizeMin != totals.sizeMin
+                    || entry.sizeMax != totals.sizeMax || entry.lines != totals.lines || entry.linesMin != totals.linesMin
+                    || entry.linesMax != totals.linesMax || entry.linesCode != code) {
+                System.out.println("OverView differs for " + pair.getKey());
+                mismatches++;
+            }
+            var table = result.tabs.get(pair.getKey());
+            if (isTab && (table == null || table.sum(StatTable.COMMENT) != totals.comment || table.sum(StatTable.DOC) != totals.doc
+                    || table.sum(StatTable.BLANK) != totals.blank || table.sum(StatTable.SOURCE_CODE) != code)) {
+                System.out.println("Tab differs for " + pair.getKey());
+                mismatches++;
+            }
+            System.out.printf("%-5s %7d files %10d lines %10d code %9d comment %9d doc %9d blank%n", pair.getKey(),
+                    totals.files, totals.lines, code, totals.comment, totals.doc, totals.blank);
+        }
+        System.out.println(mismatches == 0 ? "All totals match" : mismatches + " mismatches");
+
+        if (isTemporary) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
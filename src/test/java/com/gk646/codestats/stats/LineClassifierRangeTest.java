@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Classifies generated files in ranges of different sizes like {@link ParallelWalker} does with huge files and compares the counts
+ * with reading the file as a whole. Block comments span many lines, so plenty of ranges start inside one.
+ */
+public class LineClassifierRangeTest {
+    private static final String[] LINES = {"int a = 1;", "", "   ", "// comment", "/// doc", "/* block */ int b;", "/* block", "/** doc",
+            " * inside", "*/", "   */ int c;", "\"/* in a string\";", "# hash", "\"\"\"", "text \u00e4\u00f6\u00fc"};
+    private static final String[] LINE_ENDS = {"\n", "\n", "\n", "\r\n", "\r"};
+    private static final long[] RANGE_SIZES = {1, 7, 64, 1000, 1 << 20};
+
+    public static void main(String[] args) throws Exception {
+        var random = new Random(646);
+        var progress = new ScanProgress(0, null);
+        var file = Files.createTempFile("codestats", ".txt");
+        int failures = 0;
+        try {
+            for (int round = 0; round < 40; round++) {
+                var text = new StringBuilder();
+                int lines = random.nextInt(2000);
+                for (int i = 0; i < lines; i++) {
+                    text.append(LINES[random.nextInt(LINES.length)]);
+                    if (i < lines - 1 || random.nextBoolean()) text.append(LINE_ENDS[random.nextInt(LINE_ENDS.length)]);
+                }
+                Files.writeString(file, text, StandardCharsets.UTF_8);
+
+                for (var extension : new String[]{"java", "py"}) {
+                    var grammar = CommentGrammar.forExtension(extension);
+                    var whole = new LineClassifier(grammar);
+                    try (var reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8.newDecoder())) {
+                        whole.classify(reader, progress);
+                    }
+                    for (long rangeSize : RANGE_SIZES) {
+                        var ranges = new LineClassifier(grammar);
+                        ParallelWalker.classify(file, StandardCharsets.UTF_8, ranges, progress, rangeSize);
+                        if (!sameCounts(whole, ranges)) {
+                            failures++;
+                            System.out.println("Round " + round + " ." + extension + " in ranges of " + rangeSize + " differs");
+                        }
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        System.out.println(failures == 0 ? "All ranges match" : failures + " classifications differ");
+        if (failures != 0) System.exit(1);
+    }
+
+    private static boolean sameCounts(LineClassifier a, LineClassifier b) {
+        return a.totalLines == b.totalLines && a.commentLines == b.commentLines && a.docLines == b.docLines
+                && a.blankLines == b.blankLines && a.miscLines == b.miscLines;
+    }
+}
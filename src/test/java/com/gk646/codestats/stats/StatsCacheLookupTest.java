@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 gk646
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.gk646.codestats.stats;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Looks up the same cached files from several threads at once, like the workers of a walk do with the {@link StatsCache}.
+ * Every path has its own size, so a lookup that finds the wrong row or none at all is counted.
+ */
+public class StatsCacheLookupTest {
+    private static final int FILES = 20_000;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+        var root = Path.of("project");
+        var files = new FileTable(new NameTable());
+        var paths = new ArrayList<Path>(FILES);
+        for (int i = 0; i < FILES; i++) {
+            // Names of different lengths, so concurrent encodings overlap
+            var path = root.resolve("module" + i % 37).resolve("pkg" + i % 211).resolve("File" + "x".repeat(i % 50) + i + ".java");
+            paths.add(path);
+            files.add(path, new FileRecord("java", i, 7, 1, 1, 0, 0, 0));
+        }
+        var cache = StatsCache.of("test", files);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        var results = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t * FILES / THREADS;
+            results.add(pool.submit(() -> {
+                int failures = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    for (int i = 0; i < FILES; i++) {
+                        int index = (i + offset) % FILES;
+                        var record = cache.get(paths.get(index), index, 7, true);
+                        if (record == null || record.size != index) failures++;
+                    }
+                }
+                return failures;
+            }));
+        }
+        int failures = 0;
+        for (var result : results) {
+            failures += result.get();
+        }
+        pool.shutdown();
+
+        System.out.println(failures == 0 ? "All lookups match" : failures + " wrong or missed lookups");
+        if (failures != 0) System.exit(1);
+    }
+}